@@ -7,6 +7,7 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Custom error handler to display a common error page when system errors occur
@@ -28,9 +29,26 @@ public class ErrorHandler implements play.http.HttpErrorHandler {
 
     @Override
     public CompletionStage<Result> onServerError(RequestHeader request, Throwable exception) {
+        // A saturated bounded executor (e.g. the crypto pool) means overload, not a bug
+        if (isRejectedExecution(exception)) {
+            return CompletableFuture.completedFuture(
+                Results.status(503, error.render(503, "現在アクセスが集中しています。しばらくしてから再度お試しください"))
+                    .withHeader("Retry-After", "1")
+            );
+        }
+
         // Handle server errors (5xx) - this is the main requirement
         return CompletableFuture.completedFuture(
             Results.internalServerError(error.render(500, "システムエラーが発生しました"))
         );
     }
-}
\ No newline at end of file
+
+    private boolean isRejectedExecution(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RejectedExecutionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
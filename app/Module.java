@@ -1,7 +1,13 @@
 import com.google.inject.AbstractModule;
+import repositoryies.EquipmentAvailabilityIndex;
+import repositoryies.EquipmentSearchIndex;
 import services.ApplicationTimer;
 import services.AtomicCounter;
 import services.Counter;
+import services.EmailOutboxDispatcher;
+import services.EmailOutboxPurger;
+import services.PasswordResetTokenPurger;
+import services.PasswordService;
 
 import java.time.Clock;
 
@@ -25,6 +31,18 @@ public class Module extends AbstractModule {
         bind(ApplicationTimer.class).asEagerSingleton();
         // Set AtomicCounter as the implementation for Counter.
         bind(Counter.class).to(AtomicCounter.class);
+        // Warm the equipment availability index when the application starts.
+        bind(EquipmentAvailabilityIndex.class).asEagerSingleton();
+        // Load the equipment search index when the application starts.
+        bind(EquipmentSearchIndex.class).asEagerSingleton();
+        // Calibrate the BCrypt cost at startup rather than on the first login.
+        bind(PasswordService.class).asEagerSingleton();
+        // Start polling the email outbox when the application starts.
+        bind(EmailOutboxDispatcher.class).asEagerSingleton();
+        // Purge expired and used password reset tokens in the background.
+        bind(PasswordResetTokenPurger.class).asEagerSingleton();
+        // Purge old sent and failed outbox emails in the background.
+        bind(EmailOutboxPurger.class).asEagerSingleton();
     }
 
 }
@@ -6,6 +6,7 @@ import forms.RegisterForm;
 import forms.ResetPasswordForm;
 import models.PasswordResetToken;
 import models.User;
+import models.UserRole;
 import play.data.Form;
 import play.data.FormFactory;
 import play.i18n.MessagesApi;
@@ -14,10 +15,13 @@ import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Results;
+import repositoryies.EmailOutboxRepository;
 import repositoryies.PasswordResetTokenRepository;
 import repositoryies.UserRepository;
 import services.ConfigService;
 import services.EmailService;
+import services.PasswordService;
+import services.SignedPasswordResetTokens;
 import services.SlackNotificationService;
 import views.html.auth.forgotPassword;
 import views.html.auth.login;
@@ -25,6 +29,7 @@ import views.html.auth.register;
 import views.html.auth.resetPassword;
 
 import javax.inject.Inject;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
@@ -41,6 +46,11 @@ public class AuthController extends Controller {
     private final ConfigService configService;
     private final SlackNotificationService slackNotificationService;
     private final EmailService emailService;
+    private final PasswordService passwordService;
+    private final SignedPasswordResetTokens signedResetTokens;
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(AuthController.class);
 
     @Inject
     public AuthController(UserRepository userRepository,
@@ -50,7 +60,10 @@ public class AuthController extends Controller {
                           MessagesApi messagesApi,
                           ConfigService configService,
                           SlackNotificationService slackNotificationService,
-                          EmailService emailService) {
+                          EmailService emailService,
+                          PasswordService passwordService,
+                          SignedPasswordResetTokens signedResetTokens,
+                          EmailOutboxRepository emailOutboxRepository) {
         this.userRepository = userRepository;
         this.passwordResetTokenRepository = passwordResetTokenRepository;
         this.formFactory = formFactory;
@@ -59,6 +72,9 @@ public class AuthController extends Controller {
         this.configService = configService;
         this.slackNotificationService = slackNotificationService;
         this.emailService = emailService;
+        this.passwordService = passwordService;
+        this.signedResetTokens = signedResetTokens;
+        this.emailOutboxRepository = emailOutboxRepository;
     }
 
     /**
@@ -88,27 +104,51 @@ public class AuthController extends Controller {
 
         LoginForm data = loginForm.get();
 
-        return userRepository.findByUsername(data.getUsername()).thenApplyAsync(userOptional -> {
-            if (userOptional.isPresent()) {
-                User user = userOptional.get();
-                if (user.checkPassword(data.getPassword())) {
-                    // Send Slack notification for login (fire and forget)
-                    slackNotificationService.notifyUserLogin(user, request);
-                    
-                    return Results.redirect(routes.HomeController.index())
-                            .addingToSession(request, "userId", user.getId().toString())
-                            .flashing("success", "ログインしました");
-                }
+        return userRepository.findByUsername(data.getUsername()).thenComposeAsync(userOptional -> {
+            if (userOptional.isEmpty()) {
+                return CompletableFuture.completedFuture(loginFailed(loginForm, request));
             }
 
-            return badRequest(login.render(
-                    loginForm.withError("username", "ユーザー名またはパスワードが間違っています"),
-                    request,
-                    messagesApi.preferred(request)
-            ));
+            User user = userOptional.get();
+            return passwordService.verify(data.getPassword(), user.getPassword()).thenApplyAsync(matches -> {
+                if (!matches) {
+                    return loginFailed(loginForm, request);
+                }
+
+                // Upgrade hashes made with an outdated cost (fire and forget)
+                if (passwordService.needsRehash(user.getPassword())) {
+                    rehashPassword(user, data.getPassword());
+                }
+
+                // Send Slack notification for login (fire and forget)
+                slackNotificationService.notifyUserLogin(user, request);
+
+                return Results.redirect(routes.HomeController.index())
+                        .addingToSession(request, "userId", user.getId().toString())
+                        .flashing("success", "ログインしました");
+            }, classLoaderExecutionContext.current());
         }, classLoaderExecutionContext.current());
     }
 
+    private void rehashPassword(User user, String password) {
+        passwordService.hash(password)
+                // Conditional, so a password reset that lands in the meantime is not undone
+                .thenCompose(hashedPassword -> userRepository.updatePasswordHash(user.getId(), user.getPassword(), hashedPassword))
+                .exceptionally(throwable -> {
+                    // The old hash still works, so the next login simply tries again
+                    logger.warn("Could not rehash password for user {}", user.getId(), throwable);
+                    return 0;
+                });
+    }
+
+    private Result loginFailed(Form<LoginForm> loginForm, Http.Request request) {
+        return badRequest(login.render(
+                loginForm.withError("username", "ユーザー名またはパスワードが間違っています"),
+                request,
+                messagesApi.preferred(request)
+        ));
+    }
+
     /**
      * Display the registration form
      */
@@ -182,14 +222,17 @@ public class AuthController extends Controller {
                 }
 
                 // Create new user
-                User user = new User(data.getUsername(), data.getEmail(), data.getPassword());
-                return userRepository.insert(user).thenComposeAsync(userId -> {
+                User user = new User(data.getUsername(), data.getEmail(), UserRole.CUSTOMER);
+                return passwordService.hash(data.getPassword()).thenComposeAsync(hashedPassword -> {
+                    user.setHashedPassword(hashedPassword);
+                    // The welcome email is queued in the same transaction as the user
+                    return emailService.welcomeEmail(user)
+                            .map(email -> userRepository.insert(user, email))
+                            .orElseGet(() -> userRepository.insert(user));
+                }, classLoaderExecutionContext.current()).thenComposeAsync(userId -> {
                     // Send Slack notification for registration (fire and forget)
                     slackNotificationService.notifyUserRegistration(user, request);
-                    
-                    // Send welcome email (fire and forget)
-                    emailService.sendWelcomeEmail(user);
-                    
+
                     return CompletableFuture.completedFuture(
                         Results.redirect(routes.HomeController.index())
                                 .addingToSession(request, "userId", userId.toString())
@@ -237,27 +280,32 @@ public class AuthController extends Controller {
         ForgotPasswordForm data = forgotPasswordForm.get();
         
         return userRepository.findByEmail(data.getEmail()).thenComposeAsync(userOptional -> {
-            if (userOptional.isPresent()) {
+            if (userOptional.isPresent() && signedResetTokens.isEnabled()) {
+                User user = userOptional.get();
+
+                // Signed tokens need no row, only the email is stored
+                String token = signedResetTokens.create(user);
+                return emailService.passwordResetEmail(user, token, baseUrl(request))
+                        .map(email -> emailOutboxRepository.enqueue(email))
+                        .orElseGet(() -> CompletableFuture.completedFuture(null))
+                        .thenApplyAsync(emailId -> Results.redirect(routes.AuthController.showLogin())
+                                .flashing("success", "パスワードリセット用のメールを送信しました。メールをご確認ください。"),
+                                classLoaderExecutionContext.current());
+            } else if (userOptional.isPresent()) {
                 User user = userOptional.get();
                 
                 // Invalidate existing tokens for this user
                 return passwordResetTokenRepository.invalidateUserTokens(user).thenComposeAsync(v -> {
                     // Create new password reset token
                     PasswordResetToken token = new PasswordResetToken(user);
-                    
-                    return passwordResetTokenRepository.insert(token).thenComposeAsync(tokenId -> {
-                        // Get base URL from request
-                        String baseUrl = request.secure() ? "https://" : "http://";
-                        baseUrl += request.host();
-                        
-                        // Send password reset email (fire and forget)
-                        emailService.sendPasswordResetEmail(user, token.getToken(), baseUrl);
-                        
-                        return CompletableFuture.completedFuture(
-                            Results.redirect(routes.AuthController.showLogin())
-                                    .flashing("success", "パスワードリセット用のメールを送信しました。メールをご確認ください。")
-                        );
-                    }, classLoaderExecutionContext.current());
+
+                    // The reset email is queued in the same transaction as the token
+                    return emailService.passwordResetEmail(user, token.getToken(), baseUrl(request))
+                            .map(email -> passwordResetTokenRepository.insert(token, email))
+                            .orElseGet(() -> passwordResetTokenRepository.insert(token))
+                            .thenApplyAsync(tokenId -> Results.redirect(routes.AuthController.showLogin())
+                                    .flashing("success", "パスワードリセット用のメールを送信しました。メールをご確認ください。"),
+                                    classLoaderExecutionContext.current());
                 }, classLoaderExecutionContext.current());
             } else {
                 // For security, don't reveal if email exists or not
@@ -278,17 +326,21 @@ public class AuthController extends Controller {
             return CompletableFuture.completedFuture(Results.redirect(routes.HomeController.index()));
         }
 
+        Optional<SignedPasswordResetTokens.Claims> claims = signedResetTokens.parse(token);
+        if (claims.isPresent()) {
+            return userRepository.findById(claims.get().getUserId()).thenApplyAsync(userOptional -> {
+                if (userOptional.isPresent() && signedResetTokens.verify(claims.get(), userOptional.get())) {
+                    return ok(resetPassword.render(resetPasswordForm(token), request, messagesApi.preferred(request)));
+                }
+                return invalidResetLink();
+            }, classLoaderExecutionContext.current());
+        }
+
         return passwordResetTokenRepository.findValidToken(token).thenApplyAsync(tokenOptional -> {
             if (tokenOptional.isPresent() && tokenOptional.get().isValid()) {
-                Form<ResetPasswordForm> resetPasswordForm = formFactory.form(ResetPasswordForm.class);
-                // Pre-fill the token
-                resetPasswordForm = resetPasswordForm.fill(new ResetPasswordForm() {{
-                    setToken(token);
-                }});
-                return ok(resetPassword.render(resetPasswordForm, request, messagesApi.preferred(request)));
+                return ok(resetPassword.render(resetPasswordForm(token), request, messagesApi.preferred(request)));
             } else {
-                return Results.redirect(routes.AuthController.showLogin())
-                        .flashing("error", "無効または期限切れのパスワードリセットリンクです。");
+                return invalidResetLink();
             }
         }, classLoaderExecutionContext.current());
     }
@@ -318,29 +370,65 @@ public class AuthController extends Controller {
             );
         }
 
+        Optional<SignedPasswordResetTokens.Claims> claims = signedResetTokens.parse(data.getToken());
+        if (claims.isPresent()) {
+            return userRepository.findById(claims.get().getUserId()).thenComposeAsync(userOptional -> {
+                if (userOptional.isEmpty() || !signedResetTokens.verify(claims.get(), userOptional.get())) {
+                    return CompletableFuture.completedFuture(invalidResetLink());
+                }
+                User user = userOptional.get();
+                return passwordService.hash(data.getNewPassword()).thenComposeAsync(hashedPassword ->
+                        // Only succeeds while the password the token was signed for is still in place,
+                        // so two submissions of the same link cannot both win
+                        userRepository.updatePasswordHash(user.getId(), user.getPassword(), hashedPassword),
+                        classLoaderExecutionContext.current()
+                ).thenApplyAsync(updated -> {
+                    if (updated == 0) {
+                        return invalidResetLink();
+                    }
+                    return Results.redirect(routes.AuthController.showLogin())
+                            .flashing("success", "パスワードが正常に更新されました。新しいパスワードでログインしてください。");
+                }, classLoaderExecutionContext.current());
+            }, classLoaderExecutionContext.current());
+        }
+
         return passwordResetTokenRepository.findValidToken(data.getToken()).thenComposeAsync(tokenOptional -> {
             if (tokenOptional.isPresent() && tokenOptional.get().isValid()) {
                 PasswordResetToken resetToken = tokenOptional.get();
                 User user = resetToken.getUser();
                 
-                // Update user password
-                user.setPassword(data.getNewPassword());
-                
                 // Mark token as used
                 resetToken.markAsUsed();
                 
-                return userRepository.update(user).thenComposeAsync(v -> {
+                // Update user password
+                return passwordService.hash(data.getNewPassword()).thenComposeAsync(hashedPassword -> {
+                    user.setHashedPassword(hashedPassword);
+                    return userRepository.update(user);
+                }, classLoaderExecutionContext.current()).thenComposeAsync(v -> {
                     return passwordResetTokenRepository.update(resetToken).thenApplyAsync(v2 -> {
                         return Results.redirect(routes.AuthController.showLogin())
                                 .flashing("success", "パスワードが正常に更新されました。新しいパスワードでログインしてください。");
                     }, classLoaderExecutionContext.current());
                 }, classLoaderExecutionContext.current());
             } else {
-                return CompletableFuture.completedFuture(
-                    Results.redirect(routes.AuthController.showLogin())
-                            .flashing("error", "無効または期限切れのパスワードリセットリンクです。")
-                );
+                return CompletableFuture.completedFuture(invalidResetLink());
             }
         }, classLoaderExecutionContext.current());
     }
+
+    private Form<ResetPasswordForm> resetPasswordForm(String token) {
+        // Pre-fill the token
+        return formFactory.form(ResetPasswordForm.class).fill(new ResetPasswordForm() {{
+            setToken(token);
+        }});
+    }
+
+    private Result invalidResetLink() {
+        return Results.redirect(routes.AuthController.showLogin())
+                .flashing("error", "無効または期限切れのパスワードリセットリンクです。");
+    }
+
+    private static String baseUrl(Http.Request request) {
+        return (request.secure() ? "https://" : "http://") + request.host();
+    }
 }
\ No newline at end of file
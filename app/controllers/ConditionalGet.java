@@ -0,0 +1,86 @@
+package controllers;
+
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+
+/**
+ * Conditional GET for authenticated pages.
+ *
+ * A page's weak ETag is a hash of the version counters of the data it shows, the user it is shown
+ * to and the session's CSRF token (which is embedded in forms), so it can be computed and compared
+ * with {@code If-None-Match} before any query runs. Responses are {@code Cache-Control: private,
+ * no-cache}: browsers may keep the page but must revalidate it, and shared caches must not store it.
+ */
+final class ConditionalGet {
+
+    static final String CACHE_CONTROL = "private, no-cache";
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Weak ETag over the given parts, or empty when the page shows a flash message and must not be reused
+     */
+    static Optional<String> etag(Http.Request request, Object... parts) {
+        if (!request.flash().data().isEmpty()) {
+            return Optional.empty();
+        }
+        StringBuilder key = new StringBuilder(request.uri());
+        for (Object part : parts) {
+            key.append('|').append(part);
+        }
+        key.append('|').append(request.session().get("csrfToken").orElse(""));
+        return Optional.of("W/\"" + hash(key.toString()) + "\"");
+    }
+
+    /**
+     * Whether {@code If-None-Match} lists the ETag; weak comparison, as GET allows
+     */
+    static boolean isNotModified(Http.Request request, Optional<String> etag) {
+        if (etag.isEmpty()) {
+            return false;
+        }
+        String current = opaqueTag(etag.get());
+        return request.header(Http.HeaderNames.IF_NONE_MATCH).map(ifNoneMatch -> {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String trimmed = candidate.trim();
+                if (trimmed.equals("*") || opaqueTag(trimmed).equals(current)) {
+                    return true;
+                }
+            }
+            return false;
+        }).orElse(false);
+    }
+
+    static Result notModified(Optional<String> etag) {
+        return withCacheHeaders(Results.status(Http.Status.NOT_MODIFIED), etag);
+    }
+
+    static Result withCacheHeaders(Result result, Optional<String> etag) {
+        Result privateResult = result.withHeader(Http.HeaderNames.CACHE_CONTROL, CACHE_CONTROL);
+        return etag.map(value -> privateResult.withHeader(Http.HeaderNames.ETAG, value)).orElse(privateResult);
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
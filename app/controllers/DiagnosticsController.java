@@ -0,0 +1,171 @@
+package controllers;
+
+import actions.Authenticated;
+import actions.AuthenticatedAction;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import models.User;
+import play.libs.Json;
+import play.libs.concurrent.ClassLoaderExecutionContext;
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
+import repositoryies.AuthenticatedUserCache;
+import repositoryies.EmailOutboxRepository;
+import repositoryies.EquipmentAvailabilityIndex;
+import repositoryies.EquipmentCatalogCache;
+import services.EmailOutboxDispatcher;
+import services.EmailService;
+import services.PasswordResetTokenPurger;
+import services.SlackNotificationService;
+
+import javax.inject.Inject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Controller exposing internal health information of in-memory structures (admin only)
+ */
+public class DiagnosticsController extends Controller {
+
+    private final EquipmentAvailabilityIndex availabilityIndex;
+    private final AuthenticatedUserCache authenticatedUserCache;
+    private final EquipmentCatalogCache equipmentCatalogCache;
+    private final SlackNotificationService slackNotificationService;
+    private final EmailService emailService;
+    private final EmailOutboxDispatcher emailOutboxDispatcher;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final PasswordResetTokenPurger passwordResetTokenPurger;
+    private final ClassLoaderExecutionContext classLoaderExecutionContext;
+
+    @Inject
+    public DiagnosticsController(EquipmentAvailabilityIndex availabilityIndex,
+                                 AuthenticatedUserCache authenticatedUserCache,
+                                 EquipmentCatalogCache equipmentCatalogCache,
+                                 SlackNotificationService slackNotificationService,
+                                 EmailService emailService,
+                                 EmailOutboxDispatcher emailOutboxDispatcher,
+                                 EmailOutboxRepository emailOutboxRepository,
+                                 PasswordResetTokenPurger passwordResetTokenPurger,
+                                 ClassLoaderExecutionContext classLoaderExecutionContext) {
+        this.availabilityIndex = availabilityIndex;
+        this.authenticatedUserCache = authenticatedUserCache;
+        this.equipmentCatalogCache = equipmentCatalogCache;
+        this.slackNotificationService = slackNotificationService;
+        this.emailService = emailService;
+        this.emailOutboxDispatcher = emailOutboxDispatcher;
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.passwordResetTokenPurger = passwordResetTokenPurger;
+        this.classLoaderExecutionContext = classLoaderExecutionContext;
+    }
+
+    /**
+     * Compare the equipment availability index with the equipment_reservation table
+     */
+    @Authenticated
+    public CompletionStage<Result> availabilityIndex(Http.Request request) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.isAdmin()) {
+            return CompletableFuture.completedFuture(forbidden(Json.newObject().put("error", "forbidden")));
+        }
+
+        return availabilityIndex.checkConsistency().thenApplyAsync(report -> {
+            return ok(Json.toJson(report));
+        }, classLoaderExecutionContext.current());
+    }
+
+    /**
+     * Hit/miss statistics of the authenticated user cache
+     */
+    @Authenticated
+    public Result userCache(Http.Request request) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.isAdmin()) {
+            return forbidden(Json.newObject().put("error", "forbidden"));
+        }
+
+        return ok(Json.toJson(authenticatedUserCache.stats()));
+    }
+
+    /**
+     * Version, size and hit/load counters of the equipment catalog cache
+     */
+    @Authenticated
+    public Result catalogCache(Http.Request request) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.isAdmin()) {
+            return forbidden(Json.newObject().put("error", "forbidden"));
+        }
+
+        return ok(Json.toJson(equipmentCatalogCache.stats()));
+    }
+
+    /**
+     * Queue metrics and webhook delivery counters of the Slack notification service
+     */
+    @Authenticated
+    public Result slackQueue(Http.Request request) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.isAdmin()) {
+            return forbidden(Json.newObject().put("error", "forbidden"));
+        }
+
+        ObjectNode result = Json.newObject();
+        result.set("queue", Json.toJson(slackNotificationService.getQueueStats()));
+        result.set("delivery", Json.toJson(slackNotificationService.getDeliveryStats()));
+        return ok(result);
+    }
+
+    /**
+     * Send queue depth, SMTP connection reuse and outbox backlog of the email service
+     */
+    @Authenticated
+    public CompletionStage<Result> email(Http.Request request) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.isAdmin()) {
+            return CompletableFuture.completedFuture(forbidden(Json.newObject().put("error", "forbidden")));
+        }
+
+        return emailOutboxRepository.countPending().thenApplyAsync(pending -> {
+            ObjectNode result = Json.newObject();
+            result.put("queuedEmails", emailService.getQueuedEmails());
+            result.put("idleConnections", emailService.getTransportPool().getIdleCount());
+            result.put("createdConnections", emailService.getTransportPool().getCreatedCount());
+            result.put("reusedConnections", emailService.getTransportPool().getReusedCount());
+            result.put("discardedConnections", emailService.getTransportPool().getDiscardedCount());
+            result.put("outboxPending", pending);
+            result.put("outboxSent", emailOutboxDispatcher.getSentCount());
+            result.put("outboxFailedAttempts", emailOutboxDispatcher.getFailedCount());
+            return ok(result);
+        }, classLoaderExecutionContext.current());
+    }
+
+    /**
+     * Rows removed and duration of the password reset token purge job
+     */
+    @Authenticated
+    public Result tokenPurge(Http.Request request) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.isAdmin()) {
+            return forbidden(Json.newObject().put("error", "forbidden"));
+        }
+
+        ObjectNode result = Json.newObject();
+        result.put("runCount", passwordResetTokenPurger.getRunCount());
+        result.put("totalDeleted", passwordResetTokenPurger.getTotalDeleted());
+        PasswordResetTokenPurger.RunResult lastRun = passwordResetTokenPurger.getLastRun();
+        if (lastRun != null) {
+            ObjectNode last = result.putObject("lastRun");
+            last.put("deletedCount", lastRun.getDeletedCount());
+            last.put("chunkCount", lastRun.getChunkCount());
+            last.put("durationMillis", lastRun.getDurationMillis());
+            last.put("finishedAt", lastRun.getFinishedAt().toString());
+        }
+        return ok(result);
+    }
+}
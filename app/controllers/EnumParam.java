@@ -0,0 +1,26 @@
+package controllers;
+
+import java.util.Optional;
+
+/**
+ * Parsing of enum-valued request parameters such as list filters
+ */
+final class EnumParam {
+
+    private EnumParam() {
+    }
+
+    /**
+     * The constant of enumType with exactly this name; empty for null or an unknown name
+     */
+    static <E extends Enum<E>> Optional<E> parse(Class<E> enumType, String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Enum.valueOf(enumType, name));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
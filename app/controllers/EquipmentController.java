@@ -2,22 +2,33 @@ package controllers;
 
 import actions.Authenticated;
 import actions.AuthenticatedAction;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import forms.EquipmentForm;
 import models.Equipment;
 import models.EquipmentCategory;
+import models.ReservationCalendar;
 import models.User;
 import play.data.Form;
 import play.data.FormFactory;
 import play.i18n.MessagesApi;
+import play.libs.Json;
 import play.libs.concurrent.ClassLoaderExecutionContext;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Results;
 import repositoryies.EquipmentRepository;
+import repositoryies.EquipmentReservationRepository;
+import repositoryies.EquipmentSearchIndex;
 import services.SlackNotificationService;
 
 import javax.inject.Inject;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
@@ -27,22 +38,32 @@ import java.util.concurrent.CompletionStage;
 public class EquipmentController extends Controller {
 
     private final EquipmentRepository equipmentRepository;
+    private final EquipmentReservationRepository reservationRepository;
     private final FormFactory formFactory;
     private final ClassLoaderExecutionContext classLoaderExecutionContext;
     private final MessagesApi messagesApi;
     private final SlackNotificationService slackNotificationService;
+    private final EquipmentSearchIndex searchIndex;
+
+    private static final int PAGE_SIZE = 50;
+    private static final int SEARCH_LIMIT = 20;
+    private static final int AUTOCOMPLETE_LIMIT = 10;
 
     @Inject
     public EquipmentController(EquipmentRepository equipmentRepository,
+                               EquipmentReservationRepository reservationRepository,
                                FormFactory formFactory,
                                ClassLoaderExecutionContext classLoaderExecutionContext,
                                MessagesApi messagesApi,
-                               SlackNotificationService slackNotificationService) {
+                               SlackNotificationService slackNotificationService,
+                               EquipmentSearchIndex searchIndex) {
         this.equipmentRepository = equipmentRepository;
+        this.reservationRepository = reservationRepository;
         this.formFactory = formFactory;
         this.classLoaderExecutionContext = classLoaderExecutionContext;
         this.messagesApi = messagesApi;
         this.slackNotificationService = slackNotificationService;
+        this.searchIndex = searchIndex;
     }
 
     /**
@@ -60,8 +81,19 @@ public class EquipmentController extends Controller {
             );
         }
 
-        return equipmentRepository.findAll().thenApplyAsync(equipmentList -> {
-            return ok(views.html.equipment.index.render(equipmentList, currentUser, request, messagesApi.preferred(request)));
+        // The page only changes with the catalog, so a revalidation is answered before any query
+        Optional<String> etag = ConditionalGet.etag(request, equipmentRepository.catalogVersion(),
+                currentUser.getId(), currentUser.getRole(), currentUser.getUsername());
+        if (ConditionalGet.isNotModified(request, etag)) {
+            return CompletableFuture.completedFuture(ConditionalGet.notModified(etag));
+        }
+
+        EquipmentCategory category = request.queryString("category").flatMap(name -> EnumParam.parse(EquipmentCategory.class, name)).orElse(null);
+        String after = request.queryString("after").orElse("");
+
+        return equipmentRepository.findPage(category, after, PAGE_SIZE).thenApplyAsync(page -> {
+            return ConditionalGet.withCacheHeaders(
+                ok(views.html.equipment.index.render(page, category, currentUser, request, messagesApi.preferred(request))), etag);
         }, classLoaderExecutionContext.current());
     }
 
@@ -237,4 +269,119 @@ public class EquipmentController extends Controller {
             }, classLoaderExecutionContext.current());
         }, classLoaderExecutionContext.current());
     }
+
+    /**
+     * Display the week calendar of equipment reservations (staff only)
+     */
+    @Authenticated
+    public CompletionStage<Result> calendar(Http.Request request, String week) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.canManageEquipment()) {
+            return CompletableFuture.completedFuture(
+                Results.redirect(routes.HomeController.index())
+                    .flashing("error", "このページにアクセスする権限がありません")
+            );
+        }
+
+        return loadCalendar(week).thenApplyAsync(calendar -> {
+            return ok(views.html.equipment.calendar.render(calendar, currentUser, request, messagesApi.preferred(request)));
+        }, classLoaderExecutionContext.current());
+    }
+
+    /**
+     * Return the week calendar of equipment reservations as JSON (staff only)
+     */
+    @Authenticated
+    public CompletionStage<Result> calendarJson(Http.Request request, String week) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.canManageEquipment()) {
+            return CompletableFuture.completedFuture(forbidden(Json.newObject().put("error", "forbidden")));
+        }
+
+        return loadCalendar(week).thenApplyAsync(calendar -> {
+            ObjectNode json = Json.newObject();
+            json.put("weekStart", calendar.getWeekStart().toString());
+            ArrayNode dates = json.putArray("dates");
+            calendar.getDates().forEach(date -> dates.add(date.toString()));
+            ArrayNode rows = json.putArray("equipment");
+            for (int row = 0; row < calendar.getRowCount(); row++) {
+                ObjectNode equipment = rows.addObject();
+                equipment.put("id", calendar.getEquipmentId(row));
+                equipment.put("name", calendar.getEquipmentName(row));
+                equipment.put("category", calendar.getCategory(row).name());
+                ArrayNode reserved = equipment.putArray("reserved");
+                for (int day = 0; day < ReservationCalendar.DAYS; day++) {
+                    reserved.add(calendar.isReserved(row, day));
+                }
+            }
+            return ok(json);
+        }, classLoaderExecutionContext.current());
+    }
+
+    /**
+     * Full-text search over equipment name, description and category, best matches first
+     */
+    @Authenticated
+    public Result search(Http.Request request, String q) {
+        if (!searchIndex.isReady()) {
+            return searchUnavailable();
+        }
+        return ok(hitsJson(searchIndex.search(q, SEARCH_LIMIT), true));
+    }
+
+    /**
+     * Equipment whose name, or a word in it, starts with the typed prefix
+     */
+    @Authenticated
+    public Result autocomplete(Http.Request request, String q) {
+        if (!searchIndex.isReady()) {
+            return searchUnavailable();
+        }
+        return ok(hitsJson(searchIndex.autocomplete(q, AUTOCOMPLETE_LIMIT), false));
+    }
+
+    private static Result searchUnavailable() {
+        return status(SERVICE_UNAVAILABLE, Json.newObject().put("error", "search index is loading"));
+    }
+
+    private static ArrayNode hitsJson(List<EquipmentSearchIndex.Hit> hits, boolean withScore) {
+        ArrayNode json = Json.newArray();
+        for (EquipmentSearchIndex.Hit hit : hits) {
+            ObjectNode item = json.addObject();
+            item.put("id", hit.getId());
+            item.put("name", hit.getName());
+            if (hit.getCategory() != null) {
+                item.put("category", hit.getCategory().name());
+                item.put("categoryName", hit.getCategory().getDisplayName());
+            }
+            if (withScore) {
+                item.put("score", hit.getScore());
+            }
+        }
+        return json;
+    }
+
+    private CompletionStage<ReservationCalendar> loadCalendar(String week) {
+        LocalDate weekStart = parseWeekStart(week);
+        return equipmentRepository.findAll().thenComposeAsync(equipmentList -> {
+            return reservationRepository.findWeekCalendar(equipmentList, weekStart);
+        }, classLoaderExecutionContext.current());
+    }
+
+    /**
+     * Monday of the week containing the given ISO date, or of the current week
+     */
+    private LocalDate parseWeekStart(String week) {
+        LocalDate date = LocalDate.now();
+        if (week != null && !week.isEmpty()) {
+            try {
+                date = LocalDate.parse(week);
+            } catch (DateTimeParseException e) {
+                // Fall back to the current week
+            }
+        }
+        return date.with(DayOfWeek.MONDAY);
+    }
 }
\ No newline at end of file
@@ -2,13 +2,17 @@ package controllers;
 
 import actions.Authenticated;
 import actions.AuthenticatedAction;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import forms.EquipmentReservationForm;
 import models.Equipment;
+import models.EquipmentCategory;
 import models.EquipmentReservation;
 import models.User;
 import play.data.Form;
 import play.data.FormFactory;
 import play.i18n.MessagesApi;
+import play.libs.Json;
 import play.libs.concurrent.ClassLoaderExecutionContext;
 import play.mvc.Controller;
 import play.mvc.Http;
@@ -16,11 +20,17 @@ import play.mvc.Result;
 import play.mvc.Results;
 import repositoryies.EquipmentRepository;
 import repositoryies.EquipmentReservationRepository;
+import repositoryies.ReservationClaim;
 import services.SlackNotificationService;
 
 import javax.inject.Inject;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
 
 /**
  * Controller for equipment reservation functionality
@@ -33,6 +43,12 @@ public class EquipmentReservationController extends Controller {
     private final ClassLoaderExecutionContext classLoaderExecutionContext;
     private final MessagesApi messagesApi;
     private final SlackNotificationService slackNotificationService;
+    private final Clock clock;
+
+    // Suggestions returned per keystroke by the equipment picker
+    private static final int PICKER_LIMIT = 20;
+    // Past reservations loaded per click on the reservation page
+    private static final int PAST_PAGE_SIZE = 20;
 
     @Inject
     public EquipmentReservationController(EquipmentRepository equipmentRepository,
@@ -40,13 +56,15 @@ public class EquipmentReservationController extends Controller {
                                           FormFactory formFactory,
                                           ClassLoaderExecutionContext classLoaderExecutionContext,
                                           MessagesApi messagesApi,
-                                          SlackNotificationService slackNotificationService) {
+                                          SlackNotificationService slackNotificationService,
+                                          Clock clock) {
         this.equipmentRepository = equipmentRepository;
         this.reservationRepository = reservationRepository;
         this.formFactory = formFactory;
         this.classLoaderExecutionContext = classLoaderExecutionContext;
         this.messagesApi = messagesApi;
         this.slackNotificationService = slackNotificationService;
+        this.clock = clock;
     }
 
     /**
@@ -63,13 +81,71 @@ public class EquipmentReservationController extends Controller {
             );
         }
 
-        return equipmentRepository.findAll().thenComposeAsync(equipmentList -> {
-            return reservationRepository.findByUser(currentUser).thenApplyAsync(reservations -> {
-                Form<EquipmentReservationForm> form = formFactory.form(EquipmentReservationForm.class);
-                return ok(views.html.equipment.reservation.index.render(
-                    equipmentList, reservations, form, currentUser, request, messagesApi.preferred(request)
-                ));
-            }, classLoaderExecutionContext.current());
+        // Upcoming reservations depend on the user's reservations, equipment names and today's date
+        LocalDate today = LocalDate.now(clock);
+        Optional<String> etag = ConditionalGet.etag(request, reservationRepository.reservationVersion(currentUser.getId()),
+                equipmentRepository.catalogVersion(), today, currentUser.getId(), currentUser.getRole(), currentUser.getUsername());
+        if (ConditionalGet.isNotModified(request, etag)) {
+            return CompletableFuture.completedFuture(ConditionalGet.notModified(etag));
+        }
+
+        return reservationRepository.findUpcomingByUser(currentUser, today).thenApplyAsync(reservations -> {
+            Form<EquipmentReservationForm> form = formFactory.form(EquipmentReservationForm.class);
+            return ConditionalGet.withCacheHeaders(ok(views.html.equipment.reservation.index.render(
+                reservations, form, currentUser, request, messagesApi.preferred(request)
+            )), etag);
+        }, classLoaderExecutionContext.current());
+    }
+
+    /**
+     * One page of the current user's past reservations as JSON, loaded on demand by the reservation page
+     */
+    @Authenticated
+    public CompletionStage<Result> pastReservations(Http.Request request, String after) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.canReserveEquipment()) {
+            return CompletableFuture.completedFuture(forbidden(Json.newObject().put("error", "forbidden")));
+        }
+
+        return reservationRepository.findPastByUser(currentUser, LocalDate.now(clock), after, PAST_PAGE_SIZE).thenApplyAsync(page -> {
+            ObjectNode json = Json.newObject();
+            ArrayNode items = json.putArray("reservations");
+            for (EquipmentReservation reservation : page.getItems()) {
+                ObjectNode item = items.addObject();
+                item.put("id", reservation.getId());
+                item.put("equipmentName", reservation.getEquipment().getName());
+                item.put("reservationDate", reservation.getReservationDate().toString());
+                item.put("status", reservation.getStatus().name());
+                item.put("statusName", reservation.getStatus().getDisplayName());
+            }
+            json.put("next", page.getNextCursor().orElse(null));
+            return ok(json);
+        }, classLoaderExecutionContext.current());
+    }
+
+    /**
+     * Equipment matching a name prefix as JSON, for the search-as-you-type picker on the reservation page
+     */
+    @Authenticated
+    public CompletionStage<Result> equipmentOptions(Http.Request request, String q, String category) {
+        User currentUser = request.attrs().get(AuthenticatedAction.USER_KEY);
+
+        if (!currentUser.canReserveEquipment()) {
+            return CompletableFuture.completedFuture(forbidden(Json.newObject().put("error", "forbidden")));
+        }
+
+        EquipmentCategory categoryFilter = EnumParam.parse(EquipmentCategory.class, category).orElse(null);
+        return equipmentRepository.searchByNamePrefix(q.trim(), categoryFilter, PICKER_LIMIT).thenApplyAsync(equipmentList -> {
+            ArrayNode json = Json.newArray();
+            for (Equipment equipment : equipmentList) {
+                ObjectNode option = json.addObject();
+                option.put("id", equipment.getId());
+                option.put("name", equipment.getName());
+                option.put("category", equipment.getCategory().name());
+                option.put("categoryName", equipment.getCategory().getDisplayName());
+            }
+            return ok(json);
         }, classLoaderExecutionContext.current());
     }
 
@@ -90,12 +166,10 @@ public class EquipmentReservationController extends Controller {
         Form<EquipmentReservationForm> form = formFactory.form(EquipmentReservationForm.class).bindFromRequest(request);
         
         if (form.hasErrors()) {
-            return equipmentRepository.findAll().thenComposeAsync(equipmentList -> {
-                return reservationRepository.findByUser(currentUser).thenApplyAsync(reservations -> {
-                    return badRequest(views.html.equipment.reservation.index.render(
-                        equipmentList, reservations, form, currentUser, request, messagesApi.preferred(request)
-                    ));
-                }, classLoaderExecutionContext.current());
+            return reservationRepository.findUpcomingByUser(currentUser, LocalDate.now(clock)).thenApplyAsync(reservations -> {
+                return badRequest(views.html.equipment.reservation.index.render(
+                    reservations, form, currentUser, request, messagesApi.preferred(request)
+                ));
             }, classLoaderExecutionContext.current());
         }
 
@@ -109,41 +183,37 @@ public class EquipmentReservationController extends Controller {
             );
         }
 
-        return equipmentRepository.findById(equipmentId).thenComposeAsync(equipmentOpt -> {
-            if (equipmentOpt.isEmpty()) {
-                return CompletableFuture.completedFuture(
-                    Results.redirect(routes.EquipmentReservationController.index())
-                        .flashing("error", "指定された備品が見つかりません")
-                );
-            }
+        List<LocalDate> dates = reservationForm.getReservationDates();
+        CompletionStage<ReservationClaim> claimStage = dates.size() > 1
+            ? reservationRepository.claimAll(equipmentId, currentUser, dates)
+            : reservationRepository.claim(equipmentId, currentUser, dates.get(0));
 
-            Equipment equipment = equipmentOpt.get();
-            
-            // Check if equipment is available on the requested date
-            return reservationRepository.isEquipmentAvailable(equipment, reservationForm.getReservationDateAsLocalDate())
-                .thenComposeAsync(isAvailable -> {
-                    if (!isAvailable) {
-                        return CompletableFuture.completedFuture(
-                            Results.redirect(routes.EquipmentReservationController.index())
-                                .flashing("error", "選択された日付は既に予約済みです")
-                        );
-                    }
-
-                    EquipmentReservation reservation = new EquipmentReservation(
-                        equipment,
-                        currentUser,
-                        reservationForm.getReservationDateAsLocalDate()
-                    );
-
-                    return reservationRepository.insert(reservation).thenApplyAsync(reservationId -> {
-                        // Send Slack notification for equipment reservation (fire and forget)
-                        slackNotificationService.notifyEquipmentReservation(currentUser, equipment.getName(), "備品予約", request);
-                        
-                        return Results.redirect(routes.EquipmentReservationController.index())
-                            .flashing("success", "備品の予約が完了しました");
-                    }, classLoaderExecutionContext.current());
-                    
-                }, classLoaderExecutionContext.current());
+        return claimStage.thenApplyAsync(claim -> {
+            switch (claim.getOutcome()) {
+                case EQUIPMENT_NOT_FOUND:
+                    return Results.redirect(routes.EquipmentReservationController.index())
+                        .flashing("error", "指定された備品が見つかりません");
+                case LOST:
+                    String conflicts = claim.getConflictingDates().stream()
+                        .map(LocalDate::toString)
+                        .collect(Collectors.joining(", "));
+                    return Results.redirect(routes.EquipmentReservationController.index())
+                        .flashing("error", conflicts.isEmpty()
+                            ? "選択された日付は既に予約済みです"
+                            : "選択された日付は既に予約済みです: " + conflicts);
+                default:
+                    EquipmentReservation reservation = claim.getReservation().get();
+                    String action = dates.size() > 1
+                        ? "備品予約 (" + dates.get(0) + "〜" + dates.get(dates.size() - 1) + ", " + dates.size() + "日間)"
+                        : "備品予約";
+                    // Send Slack notification for equipment reservation (fire and forget)
+                    slackNotificationService.notifyEquipmentReservation(currentUser, reservation.getEquipment().getName(), action, request);
+
+                    return Results.redirect(routes.EquipmentReservationController.index())
+                        .flashing("success", dates.size() > 1
+                            ? dates.size() + "日間の備品の予約が完了しました"
+                            : "備品の予約が完了しました");
+            }
         }, classLoaderExecutionContext.current());
     }
 
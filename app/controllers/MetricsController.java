@@ -0,0 +1,68 @@
+package controllers;
+
+import play.mvc.Controller;
+import play.mvc.Http;
+import play.mvc.Result;
+import services.JvmMetrics;
+import services.RequestMetrics;
+
+import javax.inject.Inject;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Prometheus scrape endpoint with request latency histograms and JVM gauges.
+ *
+ * When the METRICS_TOKEN environment variable is set, scrapers must send it as a bearer token;
+ * otherwise only requests from the local machine are answered.
+ */
+public class MetricsController extends Controller {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final RequestMetrics requestMetrics;
+    private final JvmMetrics jvmMetrics;
+    private final String token;
+
+    @Inject
+    public MetricsController(RequestMetrics requestMetrics, JvmMetrics jvmMetrics) {
+        this(requestMetrics, jvmMetrics, System.getenv("METRICS_TOKEN"));
+    }
+
+    MetricsController(RequestMetrics requestMetrics, JvmMetrics jvmMetrics, String token) {
+        this.requestMetrics = requestMetrics;
+        this.jvmMetrics = jvmMetrics;
+        this.token = token != null && !token.trim().isEmpty() ? token.trim() : null;
+    }
+
+    public Result metrics(Http.Request request) {
+        if (!isAllowed(request)) {
+            return forbidden("forbidden");
+        }
+        StringBuilder out = new StringBuilder(16 * 1024);
+        requestMetrics.writePrometheus(out);
+        jvmMetrics.writePrometheus(out);
+        return ok(out.toString()).as(CONTENT_TYPE);
+    }
+
+    private boolean isAllowed(Http.Request request) {
+        if (token == null) {
+            return isLoopback(request.remoteAddress());
+        }
+        String expected = "Bearer " + token;
+        return request.header(Http.HeaderNames.AUTHORIZATION)
+                .map(actual -> MessageDigest.isEqual(actual.getBytes(StandardCharsets.UTF_8), expected.getBytes(StandardCharsets.UTF_8)))
+                .orElse(false);
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            // Literal addresses only; no name lookup happens for them
+            return InetAddress.getByName(address).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import play.mvc.Http;
 import play.mvc.Result;
 import play.mvc.Results;
 import repositoryies.UserRepository;
+import services.PasswordService;
 import services.SlackNotificationService;
 import views.html.user.management;
 import views.html.user.createStaff;
@@ -32,18 +33,23 @@ public class UserManagementController extends Controller {
     private final ClassLoaderExecutionContext classLoaderExecutionContext;
     private final MessagesApi messagesApi;
     private final SlackNotificationService slackNotificationService;
+    private final PasswordService passwordService;
+
+    private static final int PAGE_SIZE = 50;
 
     @Inject
     public UserManagementController(UserRepository userRepository,
                                     FormFactory formFactory,
                                     ClassLoaderExecutionContext classLoaderExecutionContext,
                                     MessagesApi messagesApi,
-                                    SlackNotificationService slackNotificationService) {
+                                    SlackNotificationService slackNotificationService,
+                                    PasswordService passwordService) {
         this.userRepository = userRepository;
         this.formFactory = formFactory;
         this.classLoaderExecutionContext = classLoaderExecutionContext;
         this.messagesApi = messagesApi;
         this.slackNotificationService = slackNotificationService;
+        this.passwordService = passwordService;
     }
 
     /**
@@ -61,8 +67,12 @@ public class UserManagementController extends Controller {
             );
         }
 
-        return userRepository.findAll().thenApplyAsync(users -> {
-            return ok(management.render(users, currentUser, request, messagesApi.preferred(request)));
+        UserRole role = request.queryString("role").flatMap(name -> EnumParam.parse(UserRole.class, name)).orElse(null);
+        String query = request.queryString("q").map(String::trim).orElse("");
+        String after = request.queryString("after").orElse("");
+
+        return userRepository.findPage(role, query, after, PAGE_SIZE).thenApplyAsync(page -> {
+            return ok(management.render(page, role, query, currentUser, request, messagesApi.preferred(request)));
         }, classLoaderExecutionContext.current());
     }
 
@@ -132,8 +142,11 @@ public class UserManagementController extends Controller {
                 }
 
                 // Create new staff user
-                User user = new User(data.getUsername(), data.getEmail(), data.getPassword(), UserRole.STAFF);
-                return userRepository.insert(user).thenApplyAsync(userId -> {
+                User user = new User(data.getUsername(), data.getEmail(), UserRole.STAFF);
+                return passwordService.hash(data.getPassword()).thenComposeAsync(hashedPassword -> {
+                    user.setHashedPassword(hashedPassword);
+                    return userRepository.insert(user);
+                }, classLoaderExecutionContext.current()).thenApplyAsync(userId -> {
                     // Send Slack notification for staff creation (fire and forget)
                     slackNotificationService.notifyUserUpdate(currentUser, user, "スタッフユーザー作成", request);
                     
@@ -143,4 +156,4 @@ public class UserManagementController extends Controller {
             }, classLoaderExecutionContext.current());
         }, classLoaderExecutionContext.current());
     }
-}
\ No newline at end of file
+}
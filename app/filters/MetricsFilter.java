@@ -0,0 +1,48 @@
+package filters;
+
+import play.mvc.EssentialAction;
+import play.mvc.EssentialFilter;
+import play.routing.Router;
+import services.RequestMetrics;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Filter that records the latency of every request in {@link RequestMetrics}, by route and status class.
+ *
+ * It runs outermost, so the time includes the other filters. It ends when the result (status and headers) is
+ * ready, not when a streamed body has been sent. A request that fails with an exception is recorded as 500,
+ * which is what the error handler then responds with.
+ */
+@Singleton
+public class MetricsFilter extends EssentialFilter {
+
+    private final RequestMetrics metrics;
+    private final Executor exec;
+
+    @Inject
+    public MetricsFilter(RequestMetrics metrics, Executor exec) {
+        this.metrics = metrics;
+        this.exec = exec;
+    }
+
+    @Override
+    public EssentialAction apply(EssentialAction next) {
+        return EssentialAction.of(request -> {
+            long start = System.nanoTime();
+            RequestMetrics.Route route = metrics.route(request.attrs().getOptional(Router.Attrs.HANDLER_DEF).orElse(null));
+            return next.apply(request)
+                    .map(result -> {
+                        route.record(result.status(), System.nanoTime() - start);
+                        return result;
+                    }, exec)
+                    .recoverWith(error -> {
+                        route.record(500, System.nanoTime() - start);
+                        return CompletableFuture.failedFuture(error);
+                    }, exec);
+        });
+    }
+}
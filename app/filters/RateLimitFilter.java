@@ -0,0 +1,127 @@
+package filters;
+
+import com.typesafe.config.Config;
+import org.apache.pekko.actor.ActorSystem;
+import play.libs.streams.Accumulator;
+import play.mvc.EssentialAction;
+import play.mvc.EssentialFilter;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter that rate limits expensive endpoints (login, registration, password reset, reservations).
+ *
+ * Each configured route ({@code rateLimit.rules}) has token buckets keyed by client IP and, when the
+ * session already carries one, by user id. The client IP is the remote address as resolved by Play, which
+ * only honours X-Forwarded-For from {@code play.http.forwarded.trustedProxies}; a header the client sets
+ * itself cannot give it a fresh bucket. The check happens on the request header only, so an
+ * over-limit client gets 429 with Retry-After before its body is parsed or any database work starts.
+ * Buckets live in a {@link ConcurrentHashMap}, whose bins act as the lock stripes, and are evicted
+ * once they have refilled completely. At most {@code rateLimit.maxBuckets} are held; while the map is full,
+ * clients without a bucket are let through untracked until the next eviction frees space, so that spraying
+ * source addresses cannot lock new users out. Clients that already have a bucket stay limited.
+ */
+@Singleton
+public class RateLimitFilter extends EssentialFilter {
+
+    private final Map<String, Rule> rules = new HashMap<>();
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final int maxBuckets;
+
+    @Inject
+    public RateLimitFilter(Config config, ActorSystem actorSystem) {
+        for (Config rule : config.getConfigList("rateLimit.rules")) {
+            Rule parsed = new Rule(rule.getInt("capacity"), rule.getDuration("refillPeriod"));
+            rules.put(routeKey(rule.getString("method"), rule.getString("path")), parsed);
+        }
+
+        maxBuckets = config.getInt("rateLimit.maxBuckets");
+
+        Duration evictionInterval = config.getDuration("rateLimit.evictionInterval");
+        actorSystem.scheduler().scheduleAtFixedRate(
+                evictionInterval,
+                evictionInterval,
+                this::evictIdleBuckets,
+                actorSystem.dispatcher()
+        );
+    }
+
+    @Override
+    public EssentialAction apply(EssentialAction next) {
+        return EssentialAction.of(request -> {
+            String route = routeKey(request.method(), request.path());
+            Rule rule = rules.get(route);
+            if (rule == null) {
+                return next.apply(request);
+            }
+
+            long now = System.nanoTime();
+            long waitNanos = acquire(route + "|ip:" + request.remoteAddress(), rule, now);
+            if (waitNanos == 0) {
+                Optional<String> userId = request.session().get("userId");
+                if (userId.isPresent()) {
+                    waitNanos = acquire(route + "|user:" + userId.get(), rule, now);
+                }
+            }
+
+            if (waitNanos > 0) {
+                return Accumulator.done(tooManyRequests(waitNanos));
+            }
+            return next.apply(request);
+        });
+    }
+
+    /**
+     * Number of buckets currently held in memory
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    void evictIdleBuckets() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    private long acquire(String key, Rule rule, long now) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                return 0;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(rule.capacity, rule.emissionIntervalNanos, now));
+        }
+        return bucket.tryAcquire(now);
+    }
+
+    private Result tooManyRequests(long waitNanos) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        return Results.status(Http.Status.TOO_MANY_REQUESTS, "リクエストが多すぎます。しばらくしてから再度お試しください")
+                .withHeader(Http.HeaderNames.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    }
+
+    private static String routeKey(String method, String path) {
+        return method + " " + path;
+    }
+
+    private static class Rule {
+
+        private final int capacity;
+        private final long emissionIntervalNanos;
+
+        Rule(int capacity, Duration refillPeriod) {
+            this.capacity = capacity;
+            this.emissionIntervalNanos = refillPeriod.toNanos() / capacity;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package filters;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket implemented as a GCRA (generic cell rate algorithm).
+ *
+ * The whole state is one "theoretical arrival time" in nanoseconds, updated with
+ * compare-and-set. A bucket whose arrival time is in the past is full, which is
+ * also how idle buckets are recognised for eviction.
+ */
+class TokenBucket {
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrivalTime;
+
+    /**
+     * @param capacity              maximum burst of requests
+     * @param emissionIntervalNanos time needed to refill one token
+     * @param nowNanos              current time
+     */
+    TokenBucket(int capacity, long emissionIntervalNanos, long nowNanos) {
+        this.emissionIntervalNanos = emissionIntervalNanos;
+        this.burstNanos = emissionIntervalNanos * capacity;
+        this.theoreticalArrivalTime = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Take one token.
+     *
+     * @return 0 if the token was taken, otherwise the nanoseconds until one is available
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrivalTime.get();
+            long next = Math.max(current, nowNanos) + emissionIntervalNanos;
+            long excess = next - nowNanos - burstNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (theoreticalArrivalTime.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Whether every token has been refilled, i.e. the bucket holds no state worth keeping
+     */
+    boolean isIdle(long nowNanos) {
+        return theoreticalArrivalTime.get() - nowNanos <= 0;
+    }
+}
@@ -11,12 +11,20 @@ import java.util.List;
 
 public class EquipmentReservationForm {
 
+    /**
+     * Maximum number of days that can be reserved in one submission
+     */
+    public static final int MAX_RESERVATION_DAYS = 14;
+
     @Constraints.Required
     private String equipmentId;
 
     @Constraints.Required
     private String reservationDate;
 
+    // Optional last day (inclusive) when reserving a range of dates
+    private String reservationEndDate;
+
     public EquipmentReservationForm() {
     }
 
@@ -41,6 +49,14 @@ public class EquipmentReservationForm {
         this.reservationDate = reservationDate;
     }
 
+    public String getReservationEndDate() {
+        return reservationEndDate;
+    }
+
+    public void setReservationEndDate(String reservationEndDate) {
+        this.reservationEndDate = reservationEndDate;
+    }
+
     public Long getEquipmentIdAsLong() {
         try {
             return Long.parseLong(equipmentId);
@@ -57,6 +73,40 @@ public class EquipmentReservationForm {
         }
     }
 
+    public LocalDate getReservationEndDateAsLocalDate() {
+        if (reservationEndDate == null || reservationEndDate.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(reservationEndDate, DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * All requested dates, from the reservation date through the optional end date
+     */
+    public List<LocalDate> getReservationDates() {
+        LocalDate startDate = getReservationDateAsLocalDate();
+        LocalDate endDate = getReservationEndDateAsLocalDate();
+        List<LocalDate> dates = new ArrayList<>();
+        if (startDate == null) {
+            return dates;
+        }
+        if (endDate == null || endDate.isBefore(startDate)) {
+            endDate = startDate;
+        }
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        return dates;
+    }
+
+    public boolean isRange() {
+        return getReservationDates().size() > 1;
+    }
+
     public List<ValidationError> validate() {
         List<ValidationError> errors = new ArrayList<>();
 
@@ -81,6 +131,21 @@ public class EquipmentReservationForm {
             errors.add(new ValidationError("reservationDate", "有効な日付を入力してください"));
         }
 
+        // Validate reservation end date
+        try {
+            if (reservationEndDate != null && !reservationEndDate.isEmpty()) {
+                LocalDate endDate = LocalDate.parse(reservationEndDate, DateTimeFormatter.ISO_LOCAL_DATE);
+                LocalDate startDate = getReservationDateAsLocalDate();
+                if (startDate != null && endDate.isBefore(startDate)) {
+                    errors.add(new ValidationError("reservationEndDate", "終了日は予約日以降の日付を選択してください"));
+                } else if (startDate != null && endDate.isAfter(startDate.plusDays(MAX_RESERVATION_DAYS - 1))) {
+                    errors.add(new ValidationError("reservationEndDate", "一度に予約できるのは" + MAX_RESERVATION_DAYS + "日間までです"));
+                }
+            }
+        } catch (DateTimeParseException e) {
+            errors.add(new ValidationError("reservationEndDate", "有効な日付を入力してください"));
+        }
+
         return errors.isEmpty() ? null : errors;
     }
 }
\ No newline at end of file
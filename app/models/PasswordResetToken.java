@@ -1,13 +1,20 @@
 package models;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import play.data.validation.Constraints;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.Base64;
+import java.util.HexFormat;
 
 /**
  * Password reset token entity managed by Ebean
@@ -18,10 +25,16 @@ public class PasswordResetToken extends BaseModel {
 
     private static final long serialVersionUID = 1L;
 
-    @Constraints.Required
-    @Constraints.MaxLength(255)
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Only the SHA-256 of the token is stored; the raw token exists only on a newly created instance
+    @Transient
     private String token;
 
+    @Constraints.Required
+    @Column(length = 64, unique = true)
+    private String tokenHash;
+
     @ManyToOne
     @JoinColumn(name = "user_id")
     private User user;
@@ -32,7 +45,6 @@ public class PasswordResetToken extends BaseModel {
     private boolean used;
 
     public PasswordResetToken() {
-        this.token = UUID.randomUUID().toString();
         this.expiresAt = LocalDateTime.now().plusHours(24); // Valid for 24 hours
         this.used = false;
     }
@@ -40,14 +52,41 @@ public class PasswordResetToken extends BaseModel {
     public PasswordResetToken(User user) {
         this();
         this.user = user;
+        setToken(newToken());
     }
 
+    /**
+     * Raw token for the reset link; null when the token was loaded from the database
+     */
     public String getToken() {
         return token;
     }
 
     public void setToken(String token) {
         this.token = token;
+        this.tokenHash = token == null ? null : hash(token);
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    /**
+     * Hex encoded SHA-256 of a raw token, the value stored in and looked up by token_hash
+     */
+    public static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
     public User getUser() {
@@ -0,0 +1,94 @@
+package models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Week grid of ACTIVE reservations: one row per equipment, one column per day.
+ * Each row is stored as a bitmask of the booked days.
+ */
+public class ReservationCalendar {
+
+    public static final int DAYS = 7;
+
+    private final LocalDate weekStart;
+    private final long[] equipmentIds;
+    private final String[] equipmentNames;
+    private final EquipmentCategory[] categories;
+    private final byte[] reservedDays;
+
+    public ReservationCalendar(LocalDate weekStart, List<Equipment> equipmentList) {
+        this.weekStart = weekStart;
+        int rows = equipmentList.size();
+        this.equipmentIds = new long[rows];
+        this.equipmentNames = new String[rows];
+        this.categories = new EquipmentCategory[rows];
+        this.reservedDays = new byte[rows];
+        for (int row = 0; row < rows; row++) {
+            Equipment equipment = equipmentList.get(row);
+            equipmentIds[row] = equipment.getId();
+            equipmentNames[row] = equipment.getName();
+            categories[row] = equipment.getCategory();
+        }
+    }
+
+    /**
+     * Mark the equipment in the given row as reserved on the given date; dates outside the week are ignored
+     */
+    public void markReserved(int row, LocalDate date) {
+        long day = date.toEpochDay() - weekStart.toEpochDay();
+        if (day >= 0 && day < DAYS) {
+            reservedDays[row] |= (byte) (1 << day);
+        }
+    }
+
+    public boolean isReserved(int row, int day) {
+        return (reservedDays[row] & (1 << day)) != 0;
+    }
+
+    public LocalDate getWeekStart() {
+        return weekStart;
+    }
+
+    public LocalDate getWeekEnd() {
+        return weekStart.plusDays(DAYS - 1);
+    }
+
+    public List<LocalDate> getDates() {
+        List<LocalDate> dates = new ArrayList<>(DAYS);
+        for (int day = 0; day < DAYS; day++) {
+            dates.add(weekStart.plusDays(day));
+        }
+        return dates;
+    }
+
+    public int getRowCount() {
+        return equipmentIds.length;
+    }
+
+    public long getEquipmentId(int row) {
+        return equipmentIds[row];
+    }
+
+    public String getEquipmentName(int row) {
+        return equipmentNames[row];
+    }
+
+    public EquipmentCategory getCategory(int row) {
+        return categories[row];
+    }
+
+    /**
+     * Number of equipment reserved on the given day of the week
+     */
+    public int getReservedCount(int day) {
+        int count = 0;
+        for (byte row : reservedDays) {
+            if ((row & (1 << day)) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -36,6 +36,15 @@ public class User extends BaseModel {
         this.role = UserRole.CUSTOMER; // Default role
     }
 
+    /**
+     * Create a user whose password hash is set later with {@link #setHashedPassword(String)}
+     */
+    public User(String username, String email, UserRole role) {
+        this.username = username;
+        this.email = email;
+        this.role = role;
+    }
+
     public User(String username, String email, String password) {
         this.username = username;
         this.email = email;
@@ -74,6 +83,13 @@ public class User extends BaseModel {
         this.password = BCrypt.hashpw(password, BCrypt.gensalt());
     }
 
+    /**
+     * Set a password already hashed by {@code services.PasswordService}
+     */
+    public void setHashedPassword(String hashedPassword) {
+        this.password = hashedPassword;
+    }
+
     public boolean checkPassword(String password) {
         return BCrypt.checkpw(password, this.password);
     }
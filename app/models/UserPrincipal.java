@@ -0,0 +1,52 @@
+package models;
+
+/**
+ * Immutable snapshot of the fields needed to authorize a request.
+ * Held by the authenticated user cache instead of the full {@link User} row, so the password hash is never cached.
+ */
+public final class UserPrincipal {
+
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final UserRole role;
+
+    public UserPrincipal(Long id, String username, String email, UserRole role) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.role = role;
+    }
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getEmail(), user.getRole());
+    }
+
+    /**
+     * Build a fresh, detached user for the request; controllers may mutate it without touching the cached snapshot
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setRole(role);
+        return user;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
+}
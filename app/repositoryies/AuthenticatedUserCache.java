@@ -0,0 +1,102 @@
+package repositoryies;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.typesafe.config.Config;
+import models.UserPrincipal;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+/**
+ * Bounded, TTL-based cache of authenticated users keyed by user id.
+ *
+ * Only a slim {@link UserPrincipal} is cached. Entries expire after
+ * {@code authenticatedUserCache.expireAfterWrite} and are invalidated by
+ * {@link UserRepository} whenever a user is inserted or updated. Concurrent
+ * misses for the same id share a single database load.
+ */
+@Singleton
+public class AuthenticatedUserCache {
+
+    private final AsyncCache<Long, UserPrincipal> cache;
+
+    @Inject
+    public AuthenticatedUserCache(Config config) {
+        this(config.getLong("authenticatedUserCache.maximumSize"),
+                config.getDuration("authenticatedUserCache.expireAfterWrite"));
+    }
+
+    AuthenticatedUserCache(long maximumSize, Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Get the principal for the user id, loading it on a miss.
+     * A loader that completes with null (unknown user) is not cached.
+     */
+    public CompletionStage<Optional<UserPrincipal>> get(Long userId, Function<Long, CompletionStage<UserPrincipal>> loader) {
+        return cache.get(userId, (id, executor) -> loader.apply(id).toCompletableFuture())
+                .thenApply(Optional::ofNullable);
+    }
+
+    /**
+     * Drop the cached principal so the next request reads the user from the database
+     */
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            cache.synchronous().invalidate(userId);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(cache.synchronous().stats(), cache.synchronous().estimatedSize());
+    }
+
+    /**
+     * Hit/miss counters of the cache, exposed on the diagnostics endpoint
+     */
+    public static class Stats {
+
+        private final CacheStats stats;
+        private final long size;
+
+        Stats(CacheStats stats, long size) {
+            this.stats = stats;
+            this.size = size;
+        }
+
+        public long getHitCount() {
+            return stats.hitCount();
+        }
+
+        public long getMissCount() {
+            return stats.missCount();
+        }
+
+        public double getHitRate() {
+            return stats.hitRate();
+        }
+
+        public long getLoadFailureCount() {
+            return stats.loadFailureCount();
+        }
+
+        public long getEvictionCount() {
+            return stats.evictionCount();
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package repositoryies;
+
+import io.ebean.DB;
+import io.ebean.ExpressionList;
+import io.ebean.UpdateQuery;
+import models.EmailOutbox;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+/**
+ * Repository for the email outbox.
+ *
+ * Due rows are claimed by writing a lease (owner token and expiry) with a conditional update,
+ * so when several nodes poll the table each row is handed to exactly one of them. A node that
+ * dies mid-batch simply lets its lease expire and the rows become claimable again.
+ *
+ * Bodies can carry secrets such as password reset links, so they are scrubbed as soon as a row
+ * is SENT or has permanently FAILED; only the envelope (recipient, subject, status) is kept.
+ */
+@Singleton
+public class EmailOutboxRepository {
+
+    private final DatabaseExecutionContext executionContext;
+
+    @Inject
+    public EmailOutboxRepository(DatabaseExecutionContext executionContext) {
+        this.executionContext = executionContext;
+    }
+
+    /**
+     * Queue an email on its own
+     */
+    public CompletionStage<Long> enqueue(EmailOutbox email) {
+        return supplyAsync(() -> {
+            email.save();
+            return email.getId();
+        }, executionContext);
+    }
+
+    /**
+     * Lease up to batchSize due emails for this caller
+     */
+    public CompletionStage<List<EmailOutbox>> claimBatch(int batchSize, Duration leaseDuration) {
+        return supplyAsync(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> candidates = claimable(DB.find(EmailOutbox.class).where(), now)
+                    .orderBy("id")
+                    .setMaxRows(batchSize)
+                    .findIds();
+            if (candidates.isEmpty()) {
+                return Collections.<EmailOutbox>emptyList();
+            }
+
+            // Only rows nobody else leased in the meantime are taken
+            String leaseOwner = UUID.randomUUID().toString();
+            int claimed = claimable(DB.update(EmailOutbox.class)
+                    .set("leaseOwner", leaseOwner)
+                    .set("leaseUntil", now.plus(leaseDuration))
+                    .where()
+                    .idIn(candidates), now)
+                    .update();
+            if (claimed == 0) {
+                return Collections.<EmailOutbox>emptyList();
+            }
+
+            return DB.find(EmailOutbox.class)
+                    .where()
+                    .eq("leaseOwner", leaseOwner)
+                    .orderBy("id")
+                    .findList();
+        }, executionContext);
+    }
+
+    /**
+     * Mark leased emails as delivered and scrub their bodies
+     */
+    public CompletionStage<Integer> markSent(String leaseOwner, Collection<Long> ids) {
+        return supplyAsync(() -> {
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            return DB.update(EmailOutbox.class)
+                    .set("status", EmailOutbox.OutboxStatus.SENT)
+                    .set("sentAt", LocalDateTime.now())
+                    .set("body", "")
+                    .setNull("htmlBody")
+                    .setNull("leaseOwner")
+                    .setNull("leaseUntil")
+                    .where()
+                    .idIn(ids)
+                    .eq("leaseOwner", leaseOwner)
+                    .update();
+        }, executionContext);
+    }
+
+    /**
+     * Record a failed delivery; the email is retried at nextAttemptAt, or given up (and its body scrubbed) when exhausted
+     */
+    public CompletionStage<Integer> markFailed(String leaseOwner, EmailOutbox email, String error,
+                                               LocalDateTime nextAttemptAt, boolean exhausted) {
+        return supplyAsync(() -> {
+            UpdateQuery<EmailOutbox> update = DB.update(EmailOutbox.class)
+                    .set("status", exhausted ? EmailOutbox.OutboxStatus.FAILED : EmailOutbox.OutboxStatus.PENDING)
+                    .set("attempts", email.getAttempts() + 1)
+                    .set("nextAttemptAt", nextAttemptAt)
+                    .set("lastError", error == null ? null : error.substring(0, Math.min(error.length(), 1000)))
+                    .setNull("leaseOwner")
+                    .setNull("leaseUntil");
+            if (exhausted) {
+                update.set("body", "").setNull("htmlBody");
+            }
+            return update.where()
+                    .idEq(email.getId())
+                    .eq("leaseOwner", leaseOwner)
+                    .update();
+        }, executionContext);
+    }
+
+    /**
+     * Delete up to chunkSize sent or permanently failed emails created before cutoff.
+     * Called repeatedly by the purge job so each statement only locks a bounded number of rows.
+     */
+    public CompletionStage<Integer> deleteFinishedChunk(int chunkSize, Instant cutoff) {
+        return supplyAsync(() -> {
+            List<Long> ids = DB.find(EmailOutbox.class)
+                    .where()
+                    .in("status", EmailOutbox.OutboxStatus.SENT, EmailOutbox.OutboxStatus.FAILED)
+                    .lt("createdAt", cutoff)
+                    .orderBy("id")
+                    .setMaxRows(chunkSize)
+                    .findIds();
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            return DB.find(EmailOutbox.class)
+                    .where()
+                    .idIn(ids)
+                    .delete();
+        }, executionContext);
+    }
+
+    /**
+     * Number of emails still waiting for delivery
+     */
+    public CompletionStage<Integer> countPending() {
+        return supplyAsync(() -> DB.find(EmailOutbox.class)
+                .where()
+                .eq("status", EmailOutbox.OutboxStatus.PENDING)
+                .findCount(), executionContext);
+    }
+
+    private static <T> ExpressionList<T> claimable(ExpressionList<T> where, LocalDateTime now) {
+        return where
+                .eq("status", EmailOutbox.OutboxStatus.PENDING)
+                .le("nextAttemptAt", now)
+                .or()
+                    .isNull("leaseUntil")
+                    .lt("leaseUntil", now)
+                .endOr();
+    }
+}
@@ -0,0 +1,297 @@
+package repositoryies;
+
+import io.ebean.DB;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionStage;
+import java.util.function.LongConsumer;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+/**
+ * In-memory index of the days on which each equipment has an ACTIVE reservation.
+ *
+ * Each equipment id maps to a bitset of epoch days, so availability checks can be
+ * answered without borrowing a connection from the database pool. The index is
+ * warmed from the equipment_reservation table when the application starts and is
+ * kept up to date by {@link EquipmentReservationRepository}. Until warming has
+ * finished, {@link #isReady()} returns false and callers must ask the database.
+ */
+@Singleton
+public class EquipmentAvailabilityIndex {
+
+    private static final String ACTIVE_DAYS_SQL =
+            "SELECT equipment_id, reservation_date FROM equipment_reservation WHERE status = 'ACTIVE'";
+
+    private static final int MAX_REPORTED_DIFFERENCES = 20;
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EquipmentAvailabilityIndex.class);
+
+    private final DatabaseExecutionContext executionContext;
+    private final ConcurrentHashMap<Long, DayBitmap> reservedDays = new ConcurrentHashMap<>();
+
+    // Cancellations seen while warming; re-applied once the table scan has finished
+    private final List<long[]> clearsDuringWarm = new ArrayList<>();
+    private boolean warming;
+    private volatile boolean ready;
+
+    @Inject
+    public EquipmentAvailabilityIndex(DatabaseExecutionContext executionContext) {
+        this.executionContext = executionContext;
+        warm().exceptionally(throwable -> {
+            logger.warn("Equipment availability index could not be warmed, falling back to database checks", throwable);
+            return 0;
+        });
+    }
+
+    /**
+     * Whether the index has been warmed and can answer availability checks
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Check if the equipment has an ACTIVE reservation on the given date
+     */
+    public boolean isReserved(long equipmentId, LocalDate date) {
+        DayBitmap bitmap = reservedDays.get(equipmentId);
+        return bitmap != null && bitmap.get(date.toEpochDay());
+    }
+
+    /**
+     * Record an ACTIVE reservation for the equipment on the given date
+     */
+    public void markReserved(long equipmentId, LocalDate date) {
+        reservedDays.computeIfAbsent(equipmentId, id -> new DayBitmap()).set(date.toEpochDay());
+    }
+
+    /**
+     * Remove the reservation for the equipment on the given date
+     */
+    public void markAvailable(long equipmentId, LocalDate date) {
+        long epochDay = date.toEpochDay();
+        synchronized (this) {
+            if (warming) {
+                clearsDuringWarm.add(new long[]{equipmentId, epochDay});
+            }
+        }
+        DayBitmap bitmap = reservedDays.get(equipmentId);
+        if (bitmap != null) {
+            bitmap.clear(epochDay);
+        }
+    }
+
+    /**
+     * Load every ACTIVE reservation day from the database into the index
+     */
+    public CompletionStage<Integer> warm() {
+        return supplyAsync(() -> {
+            synchronized (this) {
+                warming = true;
+                clearsDuringWarm.clear();
+            }
+            try {
+                long start = System.nanoTime();
+                int[] rows = new int[1];
+                DB.sqlQuery(ACTIVE_DAYS_SQL).findEachRow((resultSet, rowNum) -> {
+                    markReserved(resultSet.getLong(1), resultSet.getDate(2).toLocalDate());
+                    rows[0]++;
+                });
+                synchronized (this) {
+                    for (long[] clear : clearsDuringWarm) {
+                        DayBitmap bitmap = reservedDays.get(clear[0]);
+                        if (bitmap != null) {
+                            bitmap.clear(clear[1]);
+                        }
+                    }
+                    clearsDuringWarm.clear();
+                    warming = false;
+                }
+                ready = true;
+                logger.info("Equipment availability index warmed with {} reservations for {} equipment in {}ms",
+                        rows[0], reservedDays.size(), (System.nanoTime() - start) / 1_000_000);
+                return rows[0];
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    clearsDuringWarm.clear();
+                    warming = false;
+                }
+                throw e;
+            }
+        }, executionContext);
+    }
+
+    /**
+     * Compare the index against the equipment_reservation table.
+     * Reservations committed while the check runs may show up as transient differences.
+     */
+    public CompletionStage<ConsistencyReport> checkConsistency() {
+        return supplyAsync(() -> {
+            Map<Long, DayBitmap> tableDays = new HashMap<>();
+            int[] rows = new int[1];
+            DB.sqlQuery(ACTIVE_DAYS_SQL).findEachRow((resultSet, rowNum) -> {
+                tableDays.computeIfAbsent(resultSet.getLong(1), id -> new DayBitmap())
+                        .set(resultSet.getDate(2).toLocalDate().toEpochDay());
+                rows[0]++;
+            });
+
+            ConsistencyReport report = new ConsistencyReport(ready, rows[0]);
+            tableDays.forEach((equipmentId, days) -> days.forEach(epochDay -> {
+                if (!isReserved(equipmentId, LocalDate.ofEpochDay(epochDay))) {
+                    report.addMissing(equipmentId, epochDay);
+                }
+            }));
+            reservedDays.forEach((equipmentId, days) -> days.forEach(epochDay -> {
+                report.indexedDays++;
+                DayBitmap expected = tableDays.get(equipmentId);
+                if (expected == null || !expected.get(epochDay)) {
+                    report.addStale(equipmentId, epochDay);
+                }
+            }));
+            return report;
+        }, executionContext);
+    }
+
+    /**
+     * Result of comparing the index with the equipment_reservation table
+     */
+    public static class ConsistencyReport {
+
+        private final boolean ready;
+        private final int tableRows;
+        private int indexedDays;
+        private int missingCount;
+        private int staleCount;
+        private final List<String> missing = new ArrayList<>();
+        private final List<String> stale = new ArrayList<>();
+
+        ConsistencyReport(boolean ready, int tableRows) {
+            this.ready = ready;
+            this.tableRows = tableRows;
+        }
+
+        void addMissing(long equipmentId, long epochDay) {
+            if (missingCount++ < MAX_REPORTED_DIFFERENCES) {
+                missing.add(equipmentId + "@" + LocalDate.ofEpochDay(epochDay));
+            }
+        }
+
+        void addStale(long equipmentId, long epochDay) {
+            if (staleCount++ < MAX_REPORTED_DIFFERENCES) {
+                stale.add(equipmentId + "@" + LocalDate.ofEpochDay(epochDay));
+            }
+        }
+
+        public boolean isReady() {
+            return ready;
+        }
+
+        public boolean isConsistent() {
+            return missingCount == 0 && staleCount == 0;
+        }
+
+        public int getTableRows() {
+            return tableRows;
+        }
+
+        public int getIndexedDays() {
+            return indexedDays;
+        }
+
+        /**
+         * Number of ACTIVE reservations in the table that the index does not know about
+         */
+        public int getMissingCount() {
+            return missingCount;
+        }
+
+        /**
+         * Number of indexed days that have no ACTIVE reservation in the table
+         */
+        public int getStaleCount() {
+            return staleCount;
+        }
+
+        public List<String> getMissing() {
+            return missing;
+        }
+
+        public List<String> getStale() {
+            return stale;
+        }
+    }
+
+    /**
+     * Growable bitset of epoch days. Only the range between the earliest and latest
+     * reserved day is allocated, so a year of bookings costs six longs.
+     */
+    static final class DayBitmap {
+
+        private long[] words;
+        private long firstDay;
+
+        synchronized boolean get(long epochDay) {
+            if (words == null || epochDay < firstDay) {
+                return false;
+            }
+            long offset = epochDay - firstDay;
+            int word = (int) (offset >>> 6);
+            return word < words.length && (words[word] & (1L << offset)) != 0;
+        }
+
+        synchronized void set(long epochDay) {
+            if (words == null) {
+                firstDay = Math.floorDiv(epochDay, 64) * 64;
+                words = new long[1];
+            } else if (epochDay < firstDay) {
+                long newFirstDay = Math.floorDiv(epochDay, 64) * 64;
+                int shift = (int) ((firstDay - newFirstDay) >>> 6);
+                long[] grown = new long[words.length + shift];
+                System.arraycopy(words, 0, grown, shift, words.length);
+                words = grown;
+                firstDay = newFirstDay;
+            }
+            long offset = epochDay - firstDay;
+            int word = (int) (offset >>> 6);
+            if (word >= words.length) {
+                long[] grown = new long[Math.max(word + 1, words.length * 2)];
+                System.arraycopy(words, 0, grown, 0, words.length);
+                words = grown;
+            }
+            words[word] |= 1L << offset;
+        }
+
+        synchronized void clear(long epochDay) {
+            if (words == null || epochDay < firstDay) {
+                return;
+            }
+            long offset = epochDay - firstDay;
+            int word = (int) (offset >>> 6);
+            if (word < words.length) {
+                words[word] &= ~(1L << offset);
+            }
+        }
+
+        synchronized void forEach(LongConsumer consumer) {
+            if (words == null) {
+                return;
+            }
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    consumer.accept(firstDay + ((long) i << 6) + bit);
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package repositoryies;
+
+import models.Equipment;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the whole equipment catalog as one immutable snapshot.
+ *
+ * The catalog carries a version that {@link EquipmentRepository} bumps on every insert, update and
+ * delete. A snapshot is served while its version is current; the first read after a change loads a
+ * new one, and reads arriving while that load runs wait for it instead of starting their own query.
+ * The version starts from the startup time, so values from before a restart are never reused and
+ * can be put into ETags.
+ */
+@Singleton
+public class EquipmentCatalogCache {
+
+    private final AtomicLong version;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicReference<Load> loading = new AtomicReference<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+
+    @Inject
+    public EquipmentCatalogCache() {
+        this(System.currentTimeMillis());
+    }
+
+    EquipmentCatalogCache(long initialVersion) {
+        this.version = new AtomicLong(initialVersion);
+    }
+
+    /**
+     * Current catalog version; changes whenever equipment is added, changed or removed
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Mark the cached snapshot as stale
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * The current snapshot, loading it with {@code loader} unless it is cached or already being loaded
+     */
+    public CompletionStage<Snapshot> get(Supplier<CompletionStage<List<Equipment>>> loader) {
+        while (true) {
+            long current = version.get();
+            Snapshot cached = snapshot.get();
+            if (cached != null && cached.version == current) {
+                hitCount.incrementAndGet();
+                return CompletableFuture.completedFuture(cached);
+            }
+            Load inFlight = loading.get();
+            if (inFlight != null && inFlight.version == current) {
+                return inFlight.result.minimalCompletionStage();
+            }
+            Load load = new Load(current);
+            if (loading.compareAndSet(inFlight, load)) {
+                start(load, loader);
+                return load.result.minimalCompletionStage();
+            }
+            // Another reader started a load in the meantime; join it
+        }
+    }
+
+    private void start(Load load, Supplier<CompletionStage<List<Equipment>>> loader) {
+        loadCount.incrementAndGet();
+        CompletionStage<List<Equipment>> rows;
+        try {
+            rows = loader.get();
+        } catch (RuntimeException e) {
+            rows = CompletableFuture.failedFuture(e);
+        }
+        rows.whenComplete((list, error) -> {
+            if (error != null) {
+                loading.compareAndSet(load, null);
+                load.result.completeExceptionally(error);
+                return;
+            }
+            // Rows read before a concurrent change keep the old version, so the next read reloads
+            Snapshot loaded = new Snapshot(load.version, List.copyOf(list));
+            snapshot.accumulateAndGet(loaded, (previous, next) ->
+                    previous == null || previous.version < next.version ? next : previous);
+            loading.compareAndSet(load, null);
+            load.result.complete(loaded);
+        });
+    }
+
+    public Stats stats() {
+        Snapshot cached = snapshot.get();
+        return new Stats(version.get(), cached != null ? cached.version : 0,
+                cached != null ? cached.items.size() : 0, hitCount.get(), loadCount.get());
+    }
+
+    /**
+     * Immutable list of all equipment ordered by name, with the catalog version it was read at.
+     * The entities are shared between requests and loaded read-only.
+     */
+    public static class Snapshot {
+
+        private final long version;
+        private final List<Equipment> items;
+
+        Snapshot(long version, List<Equipment> items) {
+            this.version = version;
+            this.items = items;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Equipment> getItems() {
+            return items;
+        }
+    }
+
+    private static final class Load {
+
+        final long version;
+        final CompletableFuture<Snapshot> result = new CompletableFuture<>();
+
+        Load(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Counters of the cache, exposed on the diagnostics endpoint
+     */
+    public static class Stats {
+
+        private final long version;
+        private final long cachedVersion;
+        private final int size;
+        private final long hitCount;
+        private final long loadCount;
+
+        Stats(long version, long cachedVersion, int size, long hitCount, long loadCount) {
+            this.version = version;
+            this.cachedVersion = cachedVersion;
+            this.size = size;
+            this.hitCount = hitCount;
+            this.loadCount = loadCount;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getCachedVersion() {
+            return cachedVersion;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getLoadCount() {
+            return loadCount;
+        }
+    }
+}
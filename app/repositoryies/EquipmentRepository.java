@@ -1,7 +1,9 @@
 package repositoryies;
 
 import io.ebean.DB;
+import io.ebean.ExpressionList;
 import models.Equipment;
+import models.EquipmentCategory;
 import repositoryies.DatabaseExecutionContext;
 
 import javax.inject.Inject;
@@ -18,23 +20,94 @@ import static java.util.concurrent.CompletableFuture.supplyAsync;
 public class EquipmentRepository {
 
     private final DatabaseExecutionContext executionContext;
+    private final EquipmentSearchIndex searchIndex;
+    private final EquipmentCatalogCache catalogCache;
 
     @Inject
-    public EquipmentRepository(DatabaseExecutionContext executionContext) {
+    public EquipmentRepository(DatabaseExecutionContext executionContext, EquipmentSearchIndex searchIndex,
+                               EquipmentCatalogCache catalogCache) {
         this.executionContext = executionContext;
+        this.searchIndex = searchIndex;
+        this.catalogCache = catalogCache;
     }
 
     public CompletionStage<Optional<Equipment>> findById(Long id) {
         return supplyAsync(() -> DB.find(Equipment.class).setId(id).findOneOrEmpty(), executionContext);
     }
 
+    /**
+     * All equipment ordered by name, served from {@link EquipmentCatalogCache}.
+     * The list and its entities are shared between requests and must not be modified.
+     */
     public CompletionStage<List<Equipment>> findAll() {
-        return supplyAsync(() -> DB.find(Equipment.class).orderBy("name").findList(), executionContext);
+        return findCatalog().thenApply(EquipmentCatalogCache.Snapshot::getItems);
+    }
+
+    /**
+     * Version of the equipment catalog; changes with every insert, update and delete
+     */
+    public long catalogVersion() {
+        return catalogCache.version();
+    }
+
+    /**
+     * The cached catalog snapshot together with its version
+     */
+    public CompletionStage<EquipmentCatalogCache.Snapshot> findCatalog() {
+        return catalogCache.get(() -> supplyAsync(() -> DB.find(Equipment.class)
+                .setReadOnly(true)
+                .orderBy("name")
+                .findList(), executionContext));
+    }
+
+    /**
+     * One page of the catalog ordered by (name, id), optionally limited to one category
+     *
+     * @param category category to filter by, or null for all categories
+     * @param after    cursor of the previous page, or null/empty for the first page
+     */
+    public CompletionStage<KeysetPage<Equipment>> findPage(EquipmentCategory category, String after, int pageSize) {
+        return supplyAsync(() -> {
+            ExpressionList<Equipment> where = DB.find(Equipment.class).where();
+            if (category != null) {
+                where.eq("category", category);
+            }
+            KeysetPage.seekAfter(where, "name", after);
+            List<Equipment> rows = where
+                    .orderBy("name, id")
+                    .setMaxRows(pageSize + 1)
+                    .findList();
+            return KeysetPage.of(rows, pageSize, Equipment::getId, Equipment::getName);
+        }, executionContext);
+    }
+
+    /**
+     * Equipment whose name starts with the prefix, for the search-as-you-type picker.
+     * Only id, name and category are loaded.
+     */
+    public CompletionStage<List<Equipment>> searchByNamePrefix(String prefix, EquipmentCategory category, int limit) {
+        return supplyAsync(() -> {
+            ExpressionList<Equipment> where = DB.find(Equipment.class)
+                    .select("name, category")
+                    .where();
+            if (category != null) {
+                where.eq("category", category);
+            }
+            if (prefix != null && !prefix.isEmpty()) {
+                where.startsWith("name", prefix);
+            }
+            return where
+                    .orderBy("name, id")
+                    .setMaxRows(limit)
+                    .findList();
+        }, executionContext);
     }
 
     public CompletionStage<Long> insert(Equipment equipment) {
         return supplyAsync(() -> {
             equipment.save();
+            catalogCache.invalidate();
+            searchIndex.put(equipment);
             return equipment.getId();
         }, executionContext);
     }
@@ -42,6 +115,8 @@ public class EquipmentRepository {
     public CompletionStage<Equipment> update(Equipment equipment) {
         return supplyAsync(() -> {
             equipment.update();
+            catalogCache.invalidate();
+            searchIndex.put(equipment);
             return equipment;
         }, executionContext);
     }
@@ -51,6 +126,8 @@ public class EquipmentRepository {
             Optional<Equipment> equipment = DB.find(Equipment.class).setId(id).findOneOrEmpty();
             if (equipment.isPresent()) {
                 equipment.get().delete();
+                catalogCache.invalidate();
+                searchIndex.remove(id);
                 return true;
             }
             return false;
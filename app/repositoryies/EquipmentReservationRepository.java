@@ -1,16 +1,26 @@
 package repositoryies;
 
 import io.ebean.DB;
+import io.ebean.DuplicateKeyException;
+import io.ebean.ExpressionList;
+import io.ebean.SqlRow;
+import io.ebean.Transaction;
 import models.Equipment;
 import models.EquipmentReservation;
+import models.ReservationCalendar;
 import models.User;
 import repositoryies.DatabaseExecutionContext;
 
 import javax.inject.Inject;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
 
 import static java.util.concurrent.CompletableFuture.supplyAsync;
 
@@ -20,11 +30,31 @@ import static java.util.concurrent.CompletableFuture.supplyAsync;
  */
 public class EquipmentReservationRepository {
 
+    private static final String CLAIM_ALL_CONFLICTS_SQL =
+            "select r.reservation_date from equipment e"
+            + " left join equipment_reservation r on r.equipment_id = e.id"
+            + " and r.status = 'ACTIVE' and r.reservation_date in (:dates)"
+            + " where e.id = :equipmentId"
+            + " order by r.reservation_date";
+
     private final DatabaseExecutionContext executionContext;
+    private final EquipmentAvailabilityIndex availabilityIndex;
+    private final ReservationVersions reservationVersions;
 
     @Inject
-    public EquipmentReservationRepository(DatabaseExecutionContext executionContext) {
+    public EquipmentReservationRepository(DatabaseExecutionContext executionContext,
+                                          EquipmentAvailabilityIndex availabilityIndex,
+                                          ReservationVersions reservationVersions) {
         this.executionContext = executionContext;
+        this.availabilityIndex = availabilityIndex;
+        this.reservationVersions = reservationVersions;
+    }
+
+    /**
+     * Version of the user's reservation list; changes whenever one of their reservations is written
+     */
+    public long reservationVersion(Long userId) {
+        return reservationVersions.get(userId);
     }
 
     public CompletionStage<Optional<EquipmentReservation>> findById(Long id) {
@@ -35,15 +65,41 @@ public class EquipmentReservationRepository {
                 .findOneOrEmpty(), executionContext);
     }
 
-    public CompletionStage<List<EquipmentReservation>> findByUser(User user) {
+    /**
+     * The user's reservations from today on, soonest first
+     */
+    public CompletionStage<List<EquipmentReservation>> findUpcomingByUser(User user, LocalDate today) {
         return supplyAsync(() -> DB.find(EquipmentReservation.class)
-                .fetch("equipment")
+                .fetch("equipment", "name")
                 .where()
                 .eq("user", user)
-                .orderBy("reservationDate desc")
+                .ge("reservationDate", today)
+                .orderBy("reservationDate, id")
                 .findList(), executionContext);
     }
 
+    /**
+     * One page of the user's reservations before today, most recent first
+     *
+     * @param after cursor of the previous page, or null/empty for the first page
+     */
+    public CompletionStage<KeysetPage<EquipmentReservation>> findPastByUser(User user, LocalDate today, String after, int pageSize) {
+        return supplyAsync(() -> {
+            ExpressionList<EquipmentReservation> where = DB.find(EquipmentReservation.class)
+                    .fetch("equipment", "name")
+                    .where()
+                    .eq("user", user)
+                    .lt("reservationDate", today);
+            KeysetPage.seekBefore(where, "reservationDate", after, LocalDate::parse);
+            List<EquipmentReservation> rows = where
+                    .orderBy("reservationDate desc, id desc")
+                    .setMaxRows(pageSize + 1)
+                    .findList();
+            return KeysetPage.of(rows, pageSize, EquipmentReservation::getId,
+                    reservation -> reservation.getReservationDate().toString());
+        }, executionContext);
+    }
+
     public CompletionStage<List<EquipmentReservation>> findActiveReservations() {
         return supplyAsync(() -> DB.find(EquipmentReservation.class)
                 .fetch("equipment")
@@ -54,7 +110,38 @@ public class EquipmentReservationRepository {
                 .findList(), executionContext);
     }
 
+    /**
+     * Build the week grid of ACTIVE reservations for the given equipment rows.
+     * Only (equipment_id, reservation_date) pairs within the week are read.
+     */
+    public CompletionStage<ReservationCalendar> findWeekCalendar(List<Equipment> equipmentList, LocalDate weekStart) {
+        return supplyAsync(() -> {
+            ReservationCalendar calendar = new ReservationCalendar(weekStart, equipmentList);
+            Map<Long, Integer> rows = new HashMap<>();
+            for (int row = 0; row < calendar.getRowCount(); row++) {
+                rows.put(calendar.getEquipmentId(row), row);
+            }
+
+            DB.sqlQuery("SELECT equipment_id, reservation_date FROM equipment_reservation"
+                            + " WHERE status = 'ACTIVE' AND reservation_date >= ? AND reservation_date < ?"
+                            + " GROUP BY equipment_id, reservation_date")
+                    .setParameter(weekStart)
+                    .setParameter(weekStart.plusDays(ReservationCalendar.DAYS))
+                    .findEachRow((resultSet, rowNum) -> {
+                        Integer row = rows.get(resultSet.getLong(1));
+                        if (row != null) {
+                            calendar.markReserved(row, resultSet.getDate(2).toLocalDate());
+                        }
+                    });
+            return calendar;
+        }, executionContext);
+    }
+
     public CompletionStage<Boolean> isEquipmentAvailable(Equipment equipment, LocalDate date) {
+        // Answer from memory once the availability index has been warmed
+        if (availabilityIndex.isReady()) {
+            return CompletableFuture.completedFuture(!availabilityIndex.isReserved(equipment.getId(), date));
+        }
         return supplyAsync(() -> {
             long count = DB.find(EquipmentReservation.class)
                     .where()
@@ -69,13 +156,96 @@ public class EquipmentReservationRepository {
     public CompletionStage<Long> insert(EquipmentReservation reservation) {
         return supplyAsync(() -> {
             reservation.save();
+            syncAvailabilityIndex(reservation);
             return reservation.getId();
         }, executionContext);
     }
 
+    /**
+     * Reserve the equipment for the user on the given date in a single transaction.
+     * The unique index on (equipment_id, active_reservation_date) settles concurrent
+     * claims for the same date, so no separate availability check is needed.
+     */
+    public CompletionStage<ReservationClaim> claim(Long equipmentId, User user, LocalDate date) {
+        // Known conflicts are rejected from memory without touching the pool
+        if (availabilityIndex.isReady() && availabilityIndex.isReserved(equipmentId, date)) {
+            return CompletableFuture.completedFuture(ReservationClaim.lost());
+        }
+        return supplyAsync(() -> {
+            try (Transaction transaction = DB.beginTransaction()) {
+                Optional<Equipment> equipment = DB.find(Equipment.class).setId(equipmentId).findOneOrEmpty();
+                if (equipment.isEmpty()) {
+                    return ReservationClaim.equipmentNotFound();
+                }
+
+                EquipmentReservation reservation = new EquipmentReservation(equipment.get(), user, date);
+                reservation.save();
+                transaction.commit();
+                syncAvailabilityIndex(reservation);
+                return ReservationClaim.won(reservation);
+            } catch (DuplicateKeyException e) {
+                // Another request won the date first
+                availabilityIndex.markReserved(equipmentId, date);
+                return ReservationClaim.lost();
+            }
+        }, executionContext);
+    }
+
+    /**
+     * Reserve the equipment for the user on every given date, all or nothing.
+     * One query checks that the equipment exists and which dates are taken, and the
+     * reservations are written as a single JDBC batch in the same transaction.
+     */
+    public CompletionStage<ReservationClaim> claimAll(Long equipmentId, User user, List<LocalDate> dates) {
+        if (availabilityIndex.isReady()) {
+            List<LocalDate> knownConflicts = dates.stream()
+                    .filter(date -> availabilityIndex.isReserved(equipmentId, date))
+                    .collect(Collectors.toList());
+            if (!knownConflicts.isEmpty()) {
+                return CompletableFuture.completedFuture(ReservationClaim.lost(knownConflicts));
+            }
+        }
+        return supplyAsync(() -> {
+            try (Transaction transaction = DB.beginTransaction()) {
+                // One row per taken date, or a single row with a null date when all are free
+                List<SqlRow> rows = DB.sqlQuery(CLAIM_ALL_CONFLICTS_SQL)
+                        .setParameter("equipmentId", equipmentId)
+                        .setParameter("dates", dates)
+                        .findList();
+                if (rows.isEmpty()) {
+                    return ReservationClaim.equipmentNotFound();
+                }
+                List<LocalDate> conflicts = rows.stream()
+                        .map(row -> row.getDate("reservation_date"))
+                        .filter(Objects::nonNull)
+                        .map(java.sql.Date::toLocalDate)
+                        .collect(Collectors.toList());
+                if (!conflicts.isEmpty()) {
+                    conflicts.forEach(date -> availabilityIndex.markReserved(equipmentId, date));
+                    return ReservationClaim.lost(conflicts);
+                }
+
+                Equipment equipment = DB.reference(Equipment.class, equipmentId);
+                List<EquipmentReservation> reservations = dates.stream()
+                        .map(date -> new EquipmentReservation(equipment, user, date))
+                        .collect(Collectors.toList());
+                transaction.setBatchMode(true);
+                transaction.setBatchSize(reservations.size());
+                DB.saveAll(reservations);
+                transaction.commit();
+                reservations.forEach(this::syncAvailabilityIndex);
+                return ReservationClaim.won(reservations);
+            } catch (DuplicateKeyException e) {
+                // A concurrent claim took one of the dates between the check and the batch insert
+                return ReservationClaim.lost();
+            }
+        }, executionContext);
+    }
+
     public CompletionStage<EquipmentReservation> update(EquipmentReservation reservation) {
         return supplyAsync(() -> {
             reservation.update();
+            syncAvailabilityIndex(reservation);
             return reservation;
         }, executionContext);
     }
@@ -93,9 +263,27 @@ public class EquipmentReservationRepository {
                 EquipmentReservation res = reservation.get();
                 res.setStatus(EquipmentReservation.ReservationStatus.CANCELLED);
                 res.update();
+                syncAvailabilityIndex(res);
                 return true;
             }
             return false;
         }, executionContext);
     }
+
+    /**
+     * Reflect the reservation's current status in the availability index and the owner's reservation version
+     */
+    private void syncAvailabilityIndex(EquipmentReservation reservation) {
+        if (reservation.getUser() != null) {
+            reservationVersions.bump(reservation.getUser().getId());
+        }
+        if (reservation.getEquipment() == null || reservation.getReservationDate() == null) {
+            return;
+        }
+        if (reservation.isActive()) {
+            availabilityIndex.markReserved(reservation.getEquipment().getId(), reservation.getReservationDate());
+        } else {
+            availabilityIndex.markAvailable(reservation.getEquipment().getId(), reservation.getReservationDate());
+        }
+    }
 }
\ No newline at end of file
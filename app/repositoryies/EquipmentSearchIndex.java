@@ -0,0 +1,609 @@
+package repositoryies;
+
+import io.ebean.DB;
+import models.Equipment;
+import models.EquipmentCategory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+
+/**
+ * In-memory n-gram index over the name, description and category of every equipment.
+ *
+ * Text is NFKC-normalized, lower-cased and hiragana is folded to katakana; every bigram and
+ * trigram inside a run of letters or digits maps to a sorted {@code int[]} of document numbers.
+ * Grams of the name are indexed a second time on their own, so name matches weigh double.
+ * A search adds up the weights of the query grams each document contains, so it works for
+ * Japanese text without word boundaries and tolerates small typos, and never scans the table
+ * the way {@code LIKE '%...%'} does. Name prefixes (of the whole name and of each word in it)
+ * are kept in a sorted map for autocomplete.
+ *
+ * The index is loaded from the equipment table when the application starts and is kept up to
+ * date by {@link EquipmentRepository}. Until loading has finished, {@link #isReady()} returns false;
+ * a failed load is retried with exponential backoff, so search recovers once the database is back.
+ */
+@Singleton
+public class EquipmentSearchIndex {
+
+    private static final String EQUIPMENT_SQL = "SELECT id, name, description, category FROM equipment";
+
+    // Flag bits that keep trigram keys apart from bigram keys and name grams apart from all-text grams
+    private static final long TRIGRAM = 1L << 48;
+    private static final long NAME = 1L << 49;
+    private static final int BIGRAM_WEIGHT = 1;
+    private static final int TRIGRAM_WEIGHT = 2;
+    // Share of the query's gram weight a document must contain to be a hit
+    private static final double MIN_COVERAGE = 0.5;
+    private static final long INITIAL_RETRY_MILLIS = 1_000;
+    private static final long MAX_RETRY_MILLIS = 60_000;
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EquipmentSearchIndex.class);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Document number by equipment id; document numbers are never reused
+    private final Map<Long, Integer> docs = new HashMap<>();
+    private long[] ids = new long[64];
+    private String[] names = new String[64];
+    private EquipmentCategory[] categories = new EquipmentCategory[64];
+    private String[] normalizedNames = new String[64];
+    private String[] normalizedTexts = new String[64];
+    private int docCount;
+    private int liveCount;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // "<name from a word start>\0<doc>" -> doc
+    private final TreeMap<String, Integer> prefixes = new TreeMap<>();
+
+    // Equipment changed while loading; the rows read from the table are older and skipped
+    private final Set<Long> changedDuringWarm = new HashSet<>();
+    private boolean warming;
+    private volatile boolean ready;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    @Inject
+    public EquipmentSearchIndex(DatabaseExecutionContext executionContext) {
+        load(executionContext, 1);
+    }
+
+    /**
+     * An index that is not loaded from the database and is ready straight away
+     */
+    public EquipmentSearchIndex() {
+        ready = true;
+    }
+
+    /**
+     * Whether the index has been loaded and can answer searches
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Number of indexed equipment
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add the equipment or replace its indexed text
+     */
+    public void put(Equipment equipment) {
+        put(equipment.getId(), equipment.getName(), equipment.getDescription(), equipment.getCategory());
+    }
+
+    public void put(long id, String name, String description, EquipmentCategory category) {
+        lock.writeLock().lock();
+        try {
+            if (warming) {
+                changedDuringWarm.add(id);
+            }
+            index(id, name, description, category);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the equipment from the index
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (warming) {
+                changedDuringWarm.add(id);
+            }
+            Integer doc = docs.remove(id);
+            if (doc != null) {
+                unindex(doc);
+                names[doc] = null;
+                categories[doc] = null;
+                normalizedNames[doc] = null;
+                normalizedTexts[doc] = null;
+                liveCount--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Equipment ranked by how much of the query's text they contain, best first
+     */
+    public List<Hit> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        long[] queryGrams = grams(normalized);
+        Scratch s = scratch.get();
+
+        lock.readLock().lock();
+        try {
+            TopK top = new TopK(limit);
+            if (queryGrams.length == 0) {
+                // A single character has no grams; compare against every document's text instead
+                for (int doc = 0; doc < docCount; doc++) {
+                    String text = normalizedTexts[doc];
+                    if (text != null && text.contains(normalized)) {
+                        top.offer(normalizedNames[doc].contains(normalized) ? 2 : 1, doc);
+                    }
+                }
+                return top.toHits();
+            }
+
+            int total = 0;
+            s.ensureCapacity(docCount);
+            // Coverage of the whole text decides what is a hit, name grams only add to the rank
+            int[] coverage = s.coverage;
+            int[] nameScores = s.nameScores;
+            int touched = 0;
+            for (long gram : queryGrams) {
+                int weight = weight(gram);
+                total += weight;
+                Postings list = postings.get(gram);
+                if (list != null) {
+                    for (int i = 0; i < list.size; i++) {
+                        int doc = list.docs[i];
+                        if (coverage[doc] == 0) {
+                            s.touched = grow(s.touched, touched);
+                            s.touched[touched++] = doc;
+                        }
+                        coverage[doc] += weight;
+                    }
+                }
+                Postings nameList = postings.get(gram | NAME);
+                if (nameList != null) {
+                    for (int i = 0; i < nameList.size; i++) {
+                        nameScores[nameList.docs[i]] += weight;
+                    }
+                }
+            }
+
+            int threshold = (int) Math.ceil(total * MIN_COVERAGE);
+            for (int i = 0; i < touched; i++) {
+                int doc = s.touched[i];
+                int textScore = coverage[doc];
+                int score = textScore + nameScores[doc];
+                coverage[doc] = 0;
+                nameScores[doc] = 0;
+                if (textScore < threshold) {
+                    continue;
+                }
+                // A name starting with the query outranks everything else
+                if (normalizedNames[doc].startsWith(normalized)) {
+                    score += 2 * total;
+                }
+                top.offer(score, doc);
+            }
+            return top.toHits();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Equipment whose name, or a word in it, starts with the prefix
+     */
+    public List<Hit> autocomplete(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            List<Hit> hits = new ArrayList<>();
+            Set<Integer> seen = new HashSet<>();
+            for (Integer doc : prefixes.subMap(normalized, normalized + Character.MAX_VALUE).values()) {
+                if (seen.add(doc)) {
+                    hits.add(hit(doc, 0));
+                    if (hits.size() == limit) {
+                        break;
+                    }
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void load(DatabaseExecutionContext executionContext, int attempt) {
+        warm(executionContext).whenComplete((rows, throwable) -> {
+            if (throwable == null) {
+                return;
+            }
+            long delay = retryDelayMillis(attempt);
+            logger.warn("Equipment search index could not be loaded (attempt {}), retrying in {}ms", attempt, delay, throwable);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executionContext)
+                    .execute(() -> load(executionContext, attempt + 1));
+        });
+    }
+
+    /**
+     * Delay before the next load after {@code attempt} failed ones: doubling from one second up to a
+     * minute, with jitter so that nodes restarted together do not retry in lockstep
+     */
+    static long retryDelayMillis(int attempt) {
+        long ceiling = Math.min(MAX_RETRY_MILLIS, INITIAL_RETRY_MILLIS << Math.min(attempt - 1, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Load every equipment from the database into the index
+     */
+    private CompletionStage<Integer> warm(DatabaseExecutionContext executionContext) {
+        return supplyAsync(() -> {
+            lock.writeLock().lock();
+            try {
+                warming = true;
+                changedDuringWarm.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                long start = System.nanoTime();
+                int[] rows = new int[1];
+                DB.sqlQuery(EQUIPMENT_SQL).findEachRow((resultSet, rowNum) -> {
+                    long id = resultSet.getLong(1);
+                    String category = resultSet.getString(4);
+                    lock.writeLock().lock();
+                    try {
+                        if (!changedDuringWarm.contains(id)) {
+                            index(id, resultSet.getString(2), resultSet.getString(3),
+                                    category != null ? EquipmentCategory.valueOf(category) : null);
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    rows[0]++;
+                });
+                ready = true;
+                logger.info("Equipment search index loaded with {} equipment and {} grams in {}ms",
+                        rows[0], postings.size(), (System.nanoTime() - start) / 1_000_000);
+                return rows[0];
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    changedDuringWarm.clear();
+                    warming = false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }, executionContext);
+    }
+
+    // Callers hold the write lock
+    private void index(long id, String name, String description, EquipmentCategory category) {
+        Integer existing = docs.get(id);
+        int doc;
+        if (existing != null) {
+            doc = existing;
+            unindex(doc);
+        } else {
+            doc = docCount++;
+            if (doc == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                categories = Arrays.copyOf(categories, capacity);
+                normalizedNames = Arrays.copyOf(normalizedNames, capacity);
+                normalizedTexts = Arrays.copyOf(normalizedTexts, capacity);
+            }
+            docs.put(id, doc);
+            liveCount++;
+        }
+        String normalizedName = normalize(name);
+        ids[doc] = id;
+        names[doc] = name;
+        categories[doc] = category;
+        normalizedNames[doc] = normalizedName;
+        normalizedTexts[doc] = normalizedName + "\n" + normalize(description)
+                + "\n" + (category != null ? normalize(category.getDisplayName()) : "");
+
+        for (long gram : grams(normalizedTexts[doc])) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+        }
+        for (long gram : grams(normalizedName)) {
+            postings.computeIfAbsent(gram | NAME, g -> new Postings()).add(doc);
+        }
+        for (int start : wordStarts(normalizedName)) {
+            prefixes.put(prefixKey(normalizedName, start, doc), doc);
+        }
+    }
+
+    // Callers hold the write lock
+    private void unindex(int doc) {
+        String normalizedName = normalizedNames[doc];
+        for (long gram : grams(normalizedTexts[doc])) {
+            removePosting(gram, doc);
+        }
+        for (long gram : grams(normalizedName)) {
+            removePosting(gram | NAME, doc);
+        }
+        for (int start : wordStarts(normalizedName)) {
+            prefixes.remove(prefixKey(normalizedName, start, doc));
+        }
+    }
+
+    private void removePosting(long gram, int doc) {
+        Postings list = postings.get(gram);
+        if (list != null && list.remove(doc) && list.size == 0) {
+            postings.remove(gram);
+        }
+    }
+
+    private Hit hit(int doc, int score) {
+        return new Hit(ids[doc], names[doc], categories[doc], score);
+    }
+
+    private static String prefixKey(String normalizedName, int start, int doc) {
+        return normalizedName.substring(start) + '\0' + doc;
+    }
+
+    private static int weight(long gram) {
+        return (gram & TRIGRAM) != 0 ? TRIGRAM_WEIGHT : BIGRAM_WEIGHT;
+    }
+
+    /**
+     * NFKC, lower case and hiragana folded to katakana, so full-width, half-width and kana variants match
+     */
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        char[] chars = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim().toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'ぁ' && chars[i] <= 'ゖ') {
+                chars[i] += 0x60;
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Distinct bigram and trigram keys of each run of letters or digits, sorted
+     */
+    static long[] grams(String normalized) {
+        long[] grams = new long[Math.max(0, normalized.length() * 2)];
+        int count = 0;
+        int length = normalized.length();
+        for (int i = 0; i + 1 < length; i++) {
+            char first = normalized.charAt(i);
+            char second = normalized.charAt(i + 1);
+            if (!Character.isLetterOrDigit(first) || !Character.isLetterOrDigit(second)) {
+                continue;
+            }
+            grams[count++] = ((long) first << 16) | second;
+            if (i + 2 < length && Character.isLetterOrDigit(normalized.charAt(i + 2))) {
+                grams[count++] = TRIGRAM | ((long) first << 32) | ((long) second << 16) | normalized.charAt(i + 2);
+            }
+        }
+        Arrays.sort(grams, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    private static List<Integer> wordStarts(String normalized) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(normalized.charAt(i - 1)))) {
+                starts.add(i);
+            }
+        }
+        return starts;
+    }
+
+    private static int[] grow(int[] array, int used) {
+        return used < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    /**
+     * One search or autocomplete result
+     */
+    public static class Hit {
+
+        private final long id;
+        private final String name;
+        private final EquipmentCategory category;
+        private final int score;
+
+        Hit(long id, String name, EquipmentCategory category, int score) {
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            this.score = score;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public EquipmentCategory getCategory() {
+            return category;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Sorted, growable list of document numbers containing one gram
+     */
+    static final class Postings {
+
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            // Documents are mostly added in increasing order, so this is usually an append
+            int position = size == 0 || docs[size - 1] < doc ? -(size + 1) : Arrays.binarySearch(docs, 0, size, doc);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -(position + 1);
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, insertAt, docs, insertAt + 1, size - insertAt);
+            docs[insertAt] = doc;
+            size++;
+        }
+
+        boolean remove(int doc) {
+            int position = Arrays.binarySearch(docs, 0, size, doc);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(docs, position + 1, docs, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * Per-thread score accumulators, so a search does not allocate an array the size of the index
+     */
+    private static final class Scratch {
+
+        int[] coverage = new int[0];
+        int[] nameScores = new int[0];
+        int[] touched = new int[64];
+
+        void ensureCapacity(int docCount) {
+            if (coverage.length < docCount) {
+                int capacity = Math.max(docCount, coverage.length * 2);
+                coverage = new int[capacity];
+                nameScores = new int[capacity];
+            }
+        }
+    }
+
+    /**
+     * Keeps the best {@code limit} (score, doc) pairs in a min-heap of packed longs
+     */
+    private final class TopK {
+
+        private final long[] heap;
+        private int size;
+
+        TopK(int limit) {
+            heap = new long[limit];
+        }
+
+        void offer(int score, int doc) {
+            // Equal scores rank the older document first
+            long entry = ((long) score << 32) | (Integer.MAX_VALUE - doc);
+            if (size < heap.length) {
+                heap[size] = entry;
+                siftUp(size++);
+            } else if (entry > heap[0]) {
+                heap[0] = entry;
+                siftDown(0);
+            }
+        }
+
+        List<Hit> toHits() {
+            long[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted);
+            List<Hit> hits = new ArrayList<>(size);
+            for (int i = size - 1; i >= 0; i--) {
+                hits.add(hit(Integer.MAX_VALUE - (int) sorted[i], (int) (sorted[i] >>> 32)));
+            }
+            return hits;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent] <= heap[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+}
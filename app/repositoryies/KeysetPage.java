@@ -0,0 +1,132 @@
+package repositoryies;
+
+import io.ebean.ExpressionList;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (seek) paginated listing ordered by (some column, id), ascending or descending.
+ *
+ * Instead of an OFFSET the next page starts after the sort key of the last row of this page, so
+ * every page costs the same index range scan however deep the user pages. Queries fetch one row
+ * more than the page size; its presence tells whether a next page exists. The cursor is opaque to
+ * clients: the sort key of the last row, base64url encoded.
+ */
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    private KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Build a page from rows fetched with {@code pageSize + 1} as max rows
+     */
+    static <T> KeysetPage<T> of(List<T> rows, int pageSize, Function<T, Long> id, Function<T, String> sortValue) {
+        if (rows.size() <= pageSize) {
+            return new KeysetPage<>(Collections.unmodifiableList(rows), null);
+        }
+        List<T> items = Collections.unmodifiableList(rows.subList(0, pageSize));
+        T last = items.get(pageSize - 1);
+        return new KeysetPage<>(items, new Cursor(id.apply(last), sortValue.apply(last)).encode());
+    }
+
+    /**
+     * Restrict the query to rows after the cursor, i.e. {@code (column, id) > (value, id)}.
+     * A missing or malformed cursor leaves the query unchanged, which yields the first page.
+     */
+    static <T> ExpressionList<T> seekAfter(ExpressionList<T> where, String column, String cursor) {
+        Cursor.decode(cursor).ifPresent(after -> where.or()
+                    .gt(column, after.value)
+                    .and()
+                        .eq(column, after.value)
+                        .gt("id", after.id)
+                    .endAnd()
+                .endOr());
+        return where;
+    }
+
+    /**
+     * Restrict the query to rows before the cursor, i.e. {@code (column, id) < (value, id)}, for listings
+     * ordered by {@code column desc, id desc}. The cursor value is converted to the column's type with
+     * {@code parseValue}; a cursor that does not decode or parse yields the first page.
+     */
+    static <T> ExpressionList<T> seekBefore(ExpressionList<T> where, String column, String cursor,
+                                            Function<String, ?> parseValue) {
+        Cursor.decode(cursor).ifPresent(before -> {
+            Object value;
+            try {
+                value = parseValue.apply(before.value);
+            } catch (RuntimeException e) {
+                return;
+            }
+            where.or()
+                    .lt(column, value)
+                    .and()
+                        .eq(column, value)
+                        .lt("id", before.id)
+                    .endAnd()
+                .endOr();
+        });
+        return where;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Cursor to pass back for the next page, empty on the last page
+     */
+    public Optional<String> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+
+    /**
+     * Sort key of the last row of a page: "id:value", base64url encoded
+     */
+    static class Cursor {
+
+        final Long id;
+        final String value;
+
+        Cursor(Long id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((id + ":" + value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Optional<Cursor> decode(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return Optional.empty();
+            }
+            try {
+                String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = key.indexOf(':');
+                if (separator < 0) {
+                    return Optional.empty();
+                }
+                return Optional.of(new Cursor(Long.valueOf(key.substring(0, separator)), key.substring(separator + 1)));
+            } catch (IllegalArgumentException e) {
+                // Also covers NumberFormatException
+                return Optional.empty();
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package repositoryies;
 
 import io.ebean.DB;
+import io.ebean.Transaction;
+import models.EmailOutbox;
 import models.PasswordResetToken;
 import models.User;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
 
@@ -25,14 +29,19 @@ public class PasswordResetTokenRepository {
     }
 
     /**
-     * Find valid token by token string
+     * Find an unused, unexpired token by its raw value, together with its user
      */
     public CompletionStage<Optional<PasswordResetToken>> findValidToken(String token) {
         return supplyAsync(() -> {
+            if (token == null || token.isEmpty()) {
+                return Optional.<PasswordResetToken>empty();
+            }
             return DB.find(PasswordResetToken.class)
+                    .fetch("user")
                     .where()
-                    .eq("token", token)
+                    .eq("tokenHash", PasswordResetToken.hash(token))
                     .eq("used", false)
+                    .gt("expiresAt", LocalDateTime.now())
                     .findOneOrEmpty();
         }, executionContext);
     }
@@ -47,6 +56,20 @@ public class PasswordResetTokenRepository {
         }, executionContext);
     }
 
+    /**
+     * Insert new password reset token together with the email that carries it, in one transaction
+     */
+    public CompletionStage<Long> insert(PasswordResetToken token, EmailOutbox email) {
+        return supplyAsync(() -> {
+            try (Transaction transaction = DB.beginTransaction()) {
+                token.save();
+                email.save();
+                transaction.commit();
+            }
+            return token.getId();
+        }, executionContext);
+    }
+
     /**
      * Update password reset token
      */
@@ -69,6 +92,31 @@ public class PasswordResetTokenRepository {
         }, executionContext);
     }
 
+    /**
+     * Delete up to chunkSize tokens that are expired or already used.
+     * Called repeatedly by the purge job so each statement only locks a bounded number of rows.
+     */
+    public CompletionStage<Integer> deleteExpiredOrUsedChunk(int chunkSize) {
+        return supplyAsync(() -> {
+            List<Long> ids = DB.find(PasswordResetToken.class)
+                    .where()
+                    .or()
+                        .lt("expiresAt", LocalDateTime.now())
+                        .eq("used", true)
+                    .endOr()
+                    .orderBy("id")
+                    .setMaxRows(chunkSize)
+                    .findIds();
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            return DB.find(PasswordResetToken.class)
+                    .where()
+                    .idIn(ids)
+                    .delete();
+        }, executionContext);
+    }
+
     /**
      * Invalidate all existing tokens for a user
      */
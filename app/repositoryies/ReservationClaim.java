@@ -0,0 +1,83 @@
+package repositoryies;
+
+import models.EquipmentReservation;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of trying to claim an equipment for one or more dates
+ */
+public class ReservationClaim {
+
+    public enum Outcome {
+        WON,
+        LOST,
+        EQUIPMENT_NOT_FOUND
+    }
+
+    private final Outcome outcome;
+    private final List<EquipmentReservation> reservations;
+    private final List<LocalDate> conflictingDates;
+
+    private ReservationClaim(Outcome outcome, List<EquipmentReservation> reservations, List<LocalDate> conflictingDates) {
+        this.outcome = outcome;
+        this.reservations = reservations;
+        this.conflictingDates = conflictingDates;
+    }
+
+    public static ReservationClaim won(EquipmentReservation reservation) {
+        return won(Collections.singletonList(reservation));
+    }
+
+    public static ReservationClaim won(List<EquipmentReservation> reservations) {
+        return new ReservationClaim(Outcome.WON, reservations, Collections.emptyList());
+    }
+
+    public static ReservationClaim lost() {
+        return lost(Collections.emptyList());
+    }
+
+    /**
+     * @param conflictingDates the requested dates that are already reserved, if known
+     */
+    public static ReservationClaim lost(List<LocalDate> conflictingDates) {
+        return new ReservationClaim(Outcome.LOST, Collections.emptyList(), conflictingDates);
+    }
+
+    public static ReservationClaim equipmentNotFound() {
+        return new ReservationClaim(Outcome.EQUIPMENT_NOT_FOUND, Collections.emptyList(), Collections.emptyList());
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isWon() {
+        return outcome == Outcome.WON;
+    }
+
+    /**
+     * The first saved reservation, present only when the claim was won
+     */
+    public Optional<EquipmentReservation> getReservation() {
+        return reservations.stream().findFirst();
+    }
+
+    /**
+     * All saved reservations, empty unless the claim was won
+     */
+    public List<EquipmentReservation> getReservations() {
+        return reservations;
+    }
+
+    /**
+     * Dates that were already reserved when the claim was lost; may be empty
+     * when the conflict was only detected by the unique index
+     */
+    public List<LocalDate> getConflictingDates() {
+        return conflictingDates;
+    }
+}
@@ -0,0 +1,38 @@
+package repositoryies;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user version of the reservation list, bumped by {@link EquipmentReservationRepository}
+ * whenever one of the user's reservations is written.
+ *
+ * Users without a write since startup share the initial version, the startup time, so values from
+ * before a restart are never repeated and can be put into ETags.
+ */
+@Singleton
+public class ReservationVersions {
+
+    private final long initialVersion;
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    @Inject
+    public ReservationVersions() {
+        this(System.currentTimeMillis());
+    }
+
+    ReservationVersions(long initialVersion) {
+        this.initialVersion = initialVersion;
+    }
+
+    public long get(Long userId) {
+        return versions.getOrDefault(userId, initialVersion);
+    }
+
+    void bump(Long userId) {
+        if (userId != null) {
+            versions.merge(userId, initialVersion + 1, (current, ignored) -> current + 1);
+        }
+    }
+}
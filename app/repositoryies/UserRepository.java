@@ -1,9 +1,15 @@
 package repositoryies;
 
 import io.ebean.DB;
+import io.ebean.ExpressionList;
+import io.ebean.Transaction;
+import models.EmailOutbox;
 import models.User;
+import models.UserPrincipal;
+import models.UserRole;
 
 import javax.inject.Inject;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletionStage;
@@ -17,10 +23,12 @@ import static java.util.concurrent.CompletableFuture.supplyAsync;
 public class UserRepository {
 
     private final DatabaseExecutionContext executionContext;
+    private final AuthenticatedUserCache authenticatedUserCache;
 
     @Inject
-    public UserRepository(DatabaseExecutionContext executionContext) {
+    public UserRepository(DatabaseExecutionContext executionContext, AuthenticatedUserCache authenticatedUserCache) {
         this.executionContext = executionContext;
+        this.authenticatedUserCache = authenticatedUserCache;
     }
 
     public CompletionStage<Optional<User>> findByUsername(String username) {
@@ -35,9 +43,40 @@ public class UserRepository {
         return supplyAsync(() -> DB.find(User.class).setId(id).findOneOrEmpty(), executionContext);
     }
 
+    /**
+     * Find the user attached to an authenticated request.
+     * Served from {@link AuthenticatedUserCache}; a miss loads only id, username, email and role.
+     */
+    public CompletionStage<Optional<User>> findAuthenticatedById(Long id) {
+        return authenticatedUserCache.get(id, userId -> supplyAsync(() -> DB.find(User.class)
+                .select("username, email, role")
+                .setId(userId)
+                .findOneOrEmpty()
+                .map(UserPrincipal::of)
+                .orElse(null), executionContext))
+                .thenApply(principal -> principal.map(UserPrincipal::toUser));
+    }
+
     public CompletionStage<Long> insert(User user) {
         return supplyAsync(() -> {
             user.save();
+            authenticatedUserCache.invalidate(user.getId());
+            return user.getId();
+        }, executionContext);
+    }
+
+    /**
+     * Insert the user and queue an email about it in one transaction, so the email is sent
+     * exactly when the user exists
+     */
+    public CompletionStage<Long> insert(User user, EmailOutbox email) {
+        return supplyAsync(() -> {
+            try (Transaction transaction = DB.beginTransaction()) {
+                user.save();
+                email.save();
+                transaction.commit();
+            }
+            authenticatedUserCache.invalidate(user.getId());
             return user.getId();
         }, executionContext);
     }
@@ -50,14 +89,55 @@ public class UserRepository {
         return supplyAsync(() -> DB.find(User.class).where().eq("email", email).exists(), executionContext);
     }
 
-    public CompletionStage<List<User>> findAll() {
-        return supplyAsync(() -> DB.find(User.class).orderBy("username").findList(), executionContext);
+    /**
+     * One page of users ordered by (username, id), optionally filtered by role and by a prefix of
+     * username or email. Only id, username, email and role are loaded.
+     *
+     * @param role   role to filter by, or null for all roles
+     * @param prefix username or email prefix, or null/empty for no filter
+     * @param after  cursor of the previous page, or null/empty for the first page
+     */
+    public CompletionStage<KeysetPage<User>> findPage(UserRole role, String prefix, String after, int pageSize) {
+        return supplyAsync(() -> {
+            ExpressionList<User> where = DB.find(User.class)
+                    .select("username, email, role")
+                    .where();
+            if (role != null) {
+                where.eq("role", role);
+            }
+            if (prefix != null && !prefix.isEmpty()) {
+                where.or()
+                        .startsWith("username", prefix)
+                        .startsWith("email", prefix)
+                    .endOr();
+            }
+            KeysetPage.seekAfter(where, "username", after);
+            List<User> rows = where
+                    .orderBy("username, id")
+                    .setMaxRows(pageSize + 1)
+                    .findList();
+            return KeysetPage.of(rows, pageSize, User::getId, User::getUsername);
+        }, executionContext);
     }
 
     public CompletionStage<User> update(User user) {
         return supplyAsync(() -> {
             user.update();
+            authenticatedUserCache.invalidate(user.getId());
             return user;
         }, executionContext);
     }
-}
\ No newline at end of file
+
+    /**
+     * Replace only the stored password hash (e.g. after rehashing at a new BCrypt cost), and only if it is
+     * still expectedHash; 0 when it was changed in the meantime
+     */
+    public CompletionStage<Integer> updatePasswordHash(Long id, String expectedHash, String hashedPassword) {
+        return supplyAsync(() -> DB.update(User.class)
+                .set("password", hashedPassword)
+                .set("updatedAt", Instant.now())
+                .where().idEq(id)
+                .eq("password", expectedHash)
+                .update(), executionContext);
+    }
+}
@@ -0,0 +1,168 @@
+package services;
+
+import com.typesafe.config.Config;
+import org.apache.pekko.actor.ActorSystem;
+import org.apache.pekko.actor.Cancellable;
+import play.inject.ApplicationLifecycle;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Base of the background jobs that delete rows in chunks.
+ *
+ * Every {@code interval} rows are deleted in chunks of {@code chunkSize} rows, one statement per chunk,
+ * until a chunk comes back short or {@code maxChunksPerRun} chunks were deleted. Each chunk is a
+ * separate task on the database dispatcher, so a large backlog never holds a connection or many
+ * row locks for long.
+ */
+public abstract class ChunkedPurger {
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(getClass());
+
+    private final String rowsDescription;
+    private final IntFunction<CompletionStage<Integer>> deleteChunk;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong totalDeleted = new AtomicLong();
+    private final AtomicLong runCount = new AtomicLong();
+    private volatile RunResult lastRun;
+
+    /**
+     * A purger scheduled from {@code purgeConfig} (initialDelay, interval, chunkSize, maxChunksPerRun)
+     * and stopped with the application
+     */
+    protected ChunkedPurger(String rowsDescription, IntFunction<CompletionStage<Integer>> deleteChunk, Config purgeConfig,
+                            ActorSystem actorSystem, ApplicationLifecycle lifecycle) {
+        this(rowsDescription, deleteChunk, purgeConfig.getInt("chunkSize"), purgeConfig.getInt("maxChunksPerRun"));
+
+        Duration interval = purgeConfig.getDuration("interval");
+        Cancellable schedule = actorSystem.scheduler().scheduleAtFixedRate(
+                purgeConfig.getDuration("initialDelay"),
+                interval,
+                this::purgeInBackground,
+                actorSystem.dispatcher()
+        );
+        lifecycle.addStopHook(() -> {
+            schedule.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * An unscheduled purger that only runs when {@link #purge()} is called
+     */
+    protected ChunkedPurger(String rowsDescription, IntFunction<CompletionStage<Integer>> deleteChunk,
+                            int chunkSize, int maxChunksPerRun) {
+        this.rowsDescription = rowsDescription;
+        this.deleteChunk = deleteChunk;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+    }
+
+    private void purgeInBackground() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        purge().whenComplete((result, error) -> {
+            if (error != null) {
+                logger.warn("Purge of {} failed", rowsDescription, error);
+            }
+            running.set(false);
+        });
+    }
+
+    /**
+     * Run one purge: delete chunks until nothing is left or the chunk limit is reached
+     */
+    public CompletionStage<RunResult> purge() {
+        long start = System.nanoTime();
+        return deleteChunks(0, 0).thenApply(progress -> {
+            RunResult result = new RunResult(progress[0], progress[1],
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), Instant.now());
+            lastRun = result;
+            runCount.incrementAndGet();
+            totalDeleted.addAndGet(result.deletedCount);
+            if (result.deletedCount > 0) {
+                logger.info("Purged {} {} in {} chunks ({} ms)",
+                        result.deletedCount, rowsDescription, result.chunkCount, result.durationMillis);
+            } else {
+                logger.debug("No {} to purge ({} ms)", rowsDescription, result.durationMillis);
+            }
+            return result;
+        });
+    }
+
+    // Chain one chunk after the other instead of looping on a database thread
+    private CompletionStage<int[]> deleteChunks(int deleted, int chunks) {
+        if (chunks >= maxChunksPerRun) {
+            return CompletableFuture.completedFuture(new int[] {deleted, chunks});
+        }
+        return deleteChunk.apply(chunkSize).thenCompose(count -> {
+            if (count == 0) {
+                return CompletableFuture.completedFuture(new int[] {deleted, chunks});
+            }
+            if (count < chunkSize) {
+                return CompletableFuture.completedFuture(new int[] {deleted + count, chunks + 1});
+            }
+            return deleteChunks(deleted + count, chunks + 1);
+        });
+    }
+
+    /**
+     * Outcome of the most recent run, null before the first run
+     */
+    public RunResult getLastRun() {
+        return lastRun;
+    }
+
+    public long getTotalDeleted() {
+        return totalDeleted.get();
+    }
+
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    /**
+     * Rows removed by one purge run and how long it took
+     */
+    public static class RunResult {
+
+        private final int deletedCount;
+        private final int chunkCount;
+        private final long durationMillis;
+        private final Instant finishedAt;
+
+        RunResult(int deletedCount, int chunkCount, long durationMillis, Instant finishedAt) {
+            this.deletedCount = deletedCount;
+            this.chunkCount = chunkCount;
+            this.durationMillis = durationMillis;
+            this.finishedAt = finishedAt;
+        }
+
+        public int getDeletedCount() {
+            return deletedCount;
+        }
+
+        public int getChunkCount() {
+            return chunkCount;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public Instant getFinishedAt() {
+            return finishedAt;
+        }
+    }
+}
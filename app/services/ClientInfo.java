@@ -0,0 +1,40 @@
+package services;
+
+import play.mvc.Http;
+
+/**
+ * Helpers to identify the client behind a request
+ */
+public final class ClientInfo {
+
+    private ClientInfo() {
+    }
+
+    /**
+     * Extract client IP address from request
+     */
+    public static String getClientIpAddress(Http.RequestHeader request) {
+        // Check for X-Forwarded-For header (common in load balancers/proxies)
+        String xForwardedFor = request.header("X-Forwarded-For").orElse(null);
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            // X-Forwarded-For can contain multiple IPs, take the first one
+            return xForwardedFor.split(",")[0].trim();
+        }
+
+        // Check for X-Real-IP header
+        String xRealIp = request.header("X-Real-IP").orElse(null);
+        if (xRealIp != null && !xRealIp.isEmpty()) {
+            return xRealIp;
+        }
+
+        // Fallback to remote address
+        return request.remoteAddress();
+    }
+
+    /**
+     * Extract User Agent from request
+     */
+    public static String getUserAgent(Http.RequestHeader request) {
+        return request.header("User-Agent").orElse("Unknown");
+    }
+}
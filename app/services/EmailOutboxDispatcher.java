@@ -0,0 +1,133 @@
+package services;
+
+import com.typesafe.config.Config;
+import models.EmailOutbox;
+import org.apache.pekko.actor.ActorSystem;
+import org.apache.pekko.actor.Cancellable;
+import play.inject.ApplicationLifecycle;
+import repositoryies.EmailOutboxRepository;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that delivers the email outbox.
+ *
+ * Every {@code email.outbox.pollInterval} it leases up to {@code email.outbox.batchSize} due
+ * emails, sends them over one SMTP connection and records the outcome. Failed emails are retried
+ * with exponential backoff and marked FAILED after {@code email.outbox.maxAttempts} attempts.
+ * A run is skipped while the previous one is still in progress.
+ */
+@Singleton
+public class EmailOutboxDispatcher {
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    private final EmailService emailService;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final int batchSize;
+    private final Duration leaseDuration;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @Inject
+    public EmailOutboxDispatcher(Config config, EmailService emailService, EmailOutboxRepository emailOutboxRepository,
+                                 ActorSystem actorSystem, ApplicationLifecycle lifecycle) {
+        this.emailService = emailService;
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.batchSize = config.getInt("email.outbox.batchSize");
+        this.leaseDuration = config.getDuration("email.outbox.leaseDuration");
+        this.maxAttempts = config.getInt("email.outbox.maxAttempts");
+        this.initialBackoff = config.getDuration("email.outbox.initialBackoff");
+        this.maxBackoff = config.getDuration("email.outbox.maxBackoff");
+
+        Duration pollInterval = config.getDuration("email.outbox.pollInterval");
+        Cancellable schedule = actorSystem.scheduler().scheduleAtFixedRate(
+                pollInterval,
+                pollInterval,
+                this::poll,
+                actorSystem.dispatcher()
+        );
+        lifecycle.addStopHook(() -> {
+            schedule.cancel();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private void poll() {
+        if (!emailService.isConfigured() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        dispatchBatch().whenComplete((count, error) -> {
+            if (error != null) {
+                logger.warn("Email outbox dispatch failed", error);
+            }
+            running.set(false);
+        });
+    }
+
+    /**
+     * Claim and deliver one batch; completes with the number of emails sent
+     */
+    public CompletionStage<Integer> dispatchBatch() {
+        return emailOutboxRepository.claimBatch(batchSize, leaseDuration).thenCompose(batch -> {
+            if (batch.isEmpty()) {
+                return CompletableFuture.completedFuture(0);
+            }
+            String leaseOwner = batch.get(0).getLeaseOwner();
+            return emailService.deliverBatch(batch).thenCompose(result -> {
+                List<CompletableFuture<Integer>> updates = new ArrayList<>();
+                updates.add(emailOutboxRepository.markSent(leaseOwner, result.getSentIds()).toCompletableFuture());
+                for (EmailOutbox email : batch) {
+                    String error = result.getFailures().get(email.getId());
+                    if (error != null) {
+                        updates.add(markFailed(leaseOwner, email, error).toCompletableFuture());
+                    }
+                }
+                sentCount.addAndGet(result.getSentIds().size());
+                failedCount.addAndGet(result.getFailures().size());
+                return CompletableFuture.allOf(updates.toArray(new CompletableFuture<?>[0]))
+                        .thenApply(v -> result.getSentIds().size());
+            });
+        });
+    }
+
+    private CompletionStage<Integer> markFailed(String leaseOwner, EmailOutbox email, String error) {
+        int attempts = email.getAttempts() + 1;
+        boolean exhausted = attempts >= maxAttempts;
+        if (exhausted) {
+            logger.error("Giving up on outbox email {} to {} after {} attempts", email.getId(), email.getRecipient(), attempts);
+        }
+        return emailOutboxRepository.markFailed(leaseOwner, email, error,
+                LocalDateTime.now().plus(backoff(attempts)), exhausted);
+    }
+
+    /**
+     * Delay before the next attempt: initialBackoff doubled per failed attempt, capped at maxBackoff
+     */
+    Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+}
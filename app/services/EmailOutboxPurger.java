@@ -0,0 +1,28 @@
+package services;
+
+import com.typesafe.config.Config;
+import org.apache.pekko.actor.ActorSystem;
+import play.inject.ApplicationLifecycle;
+import repositoryies.EmailOutboxRepository;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Instant;
+
+/**
+ * Background job that removes sent and permanently failed outbox emails once they are older than
+ * {@code email.outbox.purge.retention}, in chunks as configured by {@code email.outbox.purge}
+ * (see {@link ChunkedPurger}). Registered as an eager singleton in {@link Module}.
+ */
+@Singleton
+public class EmailOutboxPurger extends ChunkedPurger {
+
+    @Inject
+    public EmailOutboxPurger(Config config, EmailOutboxRepository emailOutboxRepository,
+                             ActorSystem actorSystem, ApplicationLifecycle lifecycle) {
+        super("sent or failed outbox emails",
+                chunkSize -> emailOutboxRepository.deleteFinishedChunk(chunkSize,
+                        Instant.now().minus(config.getDuration("email.outbox.purge.retention"))),
+                config.getConfig("email.outbox.purge"), actorSystem, lifecycle);
+    }
+}
@@ -1,24 +1,54 @@
 package services;
 
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import jakarta.mail.*;
 import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import models.EmailOutbox;
 import models.User;
+import org.apache.pekko.actor.ActorSystem;
+import play.inject.ApplicationLifecycle;
 import play.libs.concurrent.ClassLoaderExecutionContext;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Service for sending emails via SMTP
+ * Service for sending emails via SMTP.
+ *
+ * One mail {@link Session} is built at startup and connected transports are reused through a
+ * {@link SmtpTransportPool}. Sending runs on a dedicated executor with a fixed number of threads
+ * and a bounded queue ({@code email.executor}); when the queue is full the email is skipped.
+ *
+ * Subjects and bodies come from the precompiled {@link EmailTemplates}; every email carries both
+ * a plain-text and an HTML part.
+ *
+ * Emails that belong to a database change are built with {@link #welcomeEmail(User)} or
+ * {@link #passwordResetEmail(User, String, String)}, stored in the outbox in the same transaction
+ * and delivered later by {@link EmailOutboxDispatcher} through {@link #deliverBatch(List)}.
  */
 @Singleton
 public class EmailService {
 
-    private final ClassLoaderExecutionContext classLoaderExecutionContext;
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EmailService.class);
+
     private final String smtpHost;
     private final String smtpPort;
     private final String smtpUsername;
@@ -28,9 +58,33 @@ public class EmailService {
     private final boolean smtpAuth;
     private final boolean smtpStartTls;
 
+    private final Session session;
+    private final SmtpTransportPool transportPool;
+    private final ThreadPoolExecutor executor;
+    private final EmailTemplates templates;
+
     @Inject
+    public EmailService(Config config, ApplicationLifecycle lifecycle, ActorSystem actorSystem) {
+        this(config);
+        Duration evictionInterval = config.getDuration("email.pool.evictionInterval");
+        actorSystem.scheduler().scheduleAtFixedRate(
+                evictionInterval,
+                evictionInterval,
+                transportPool::evictIdle,
+                actorSystem.dispatcher()
+        );
+        lifecycle.addStopHook(() -> {
+            shutdown();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    // Kept for callers that construct the service by hand; settings come from application.conf
     public EmailService(ClassLoaderExecutionContext classLoaderExecutionContext) {
-        this.classLoaderExecutionContext = classLoaderExecutionContext;
+        this(ConfigFactory.load());
+    }
+
+    private EmailService(Config config) {
         this.smtpHost = System.getenv("SMTP_HOST");
         this.smtpPort = System.getenv().getOrDefault("SMTP_PORT", "587");
         this.smtpUsername = System.getenv("SMTP_USERNAME");
@@ -39,6 +93,43 @@ public class EmailService {
         this.fromName = System.getenv().getOrDefault("FROM_NAME", "コワーキングスペースポータル");
         this.smtpAuth = Boolean.parseBoolean(System.getenv().getOrDefault("SMTP_AUTH", "true"));
         this.smtpStartTls = Boolean.parseBoolean(System.getenv().getOrDefault("SMTP_STARTTLS", "true"));
+
+        String timeoutMillis = String.valueOf(config.getDuration("email.smtpTimeout").toMillis());
+        Properties props = new Properties();
+        props.put("mail.smtp.host", smtpHost != null ? smtpHost : "");
+        props.put("mail.smtp.port", smtpPort);
+        props.put("mail.smtp.auth", String.valueOf(smtpAuth));
+        props.put("mail.smtp.starttls.enable", String.valueOf(smtpStartTls));
+        props.put("mail.smtp.connectiontimeout", timeoutMillis);
+        props.put("mail.smtp.timeout", timeoutMillis);
+        props.put("mail.smtp.writetimeout", timeoutMillis);
+        this.session = Session.getInstance(props, new Authenticator() {
+            @Override
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(smtpUsername, smtpPassword);
+            }
+        });
+
+        int threads = config.getInt("email.executor.threads");
+        // One pooled connection per sending thread is enough
+        this.transportPool = new SmtpTransportPool(() -> {
+            Transport transport = session.getTransport("smtp");
+            transport.connect();
+            return transport;
+        }, threads, config.getDuration("email.pool.idleTimeout"));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getInt("email.executor.queueSize")),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "email-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // Parse the templates once, also so that a broken template fails at startup
+        this.templates = new EmailTemplates();
     }
 
     /**
@@ -54,88 +145,209 @@ public class EmailService {
      * Send welcome email to newly registered user
      */
     public CompletionStage<Boolean> sendWelcomeEmail(User user) {
+        return welcomeEmail(user)
+                .map(this::sendEmail)
+                .orElseGet(() -> CompletableFuture.completedFuture(false));
+    }
+
+    /**
+     * Build the welcome email for the outbox; empty when SMTP is not configured
+     */
+    public Optional<EmailOutbox> welcomeEmail(User user) {
         if (!isConfigured()) {
-            System.out.println("Email service not configured. Skipping welcome email for user: " + user.getUsername());
-            return CompletableFuture.completedFuture(false);
+            logger.info("Email service not configured. Skipping welcome email for user: {}", user.getUsername());
+            return Optional.empty();
         }
 
-        String subject = "コワーキングスペースポータルへようこそ";
-        String body = String.format(
-            "こんにちは %s さん,\n\n" +
-            "コワーキングスペースポータルへの会員登録が完了しました。\n\n" +
-            "ユーザー名: %s\n" +
-            "メールアドレス: %s\n\n" +
-            "ポータルサイトにログインして、設備の予約や管理を行うことができます。\n\n" +
-            "ご不明な点がございましたら、お気軽にお問い合わせください。\n\n" +
-            "コワーキングスペースポータル",
-            user.getUsername(),
-            user.getUsername(),
-            user.getEmail()
-        );
-
-        return sendEmail(user.getEmail(), subject, body);
+        return Optional.of(toOutbox(user.getEmail(),
+                templates.render(EmailTemplates.Kind.WELCOME, user.getUsername(), user.getEmail())));
     }
 
     /**
      * Send password reset email
      */
     public CompletionStage<Boolean> sendPasswordResetEmail(User user, String token, String baseUrl) {
+        return passwordResetEmail(user, token, baseUrl)
+                .map(this::sendEmail)
+                .orElseGet(() -> CompletableFuture.completedFuture(false));
+    }
+
+    /**
+     * Build the password reset email for the outbox; empty when SMTP is not configured
+     */
+    public Optional<EmailOutbox> passwordResetEmail(User user, String token, String baseUrl) {
         if (!isConfigured()) {
-            System.out.println("Email service not configured. Skipping password reset email for user: " + user.getUsername());
-            return CompletableFuture.completedFuture(false);
+            logger.info("Email service not configured. Skipping password reset email for user: {}", user.getUsername());
+            return Optional.empty();
         }
 
         String resetUrl = baseUrl + "/reset-password?token=" + token;
-        String subject = "パスワードリセットのご案内";
-        String body = String.format(
-            "こんにちは %s さん,\n\n" +
-            "パスワードリセットのリクエストを受け付けました。\n\n" +
-            "以下のリンクをクリックして、新しいパスワードを設定してください。\n" +
-            "このリンクは24時間で無効になります。\n\n" +
-            "%s\n\n" +
-            "このメールに心当たりがない場合は、このメールを無視してください。\n\n" +
-            "コワーキングスペースポータル",
-            user.getUsername(),
-            resetUrl
-        );
+        return Optional.of(toOutbox(user.getEmail(),
+                templates.render(EmailTemplates.Kind.PASSWORD_RESET, user.getUsername(), resetUrl)));
+    }
 
-        return sendEmail(user.getEmail(), subject, body);
+    private static EmailOutbox toOutbox(String recipient, EmailTemplates.Rendered rendered) {
+        EmailOutbox email = new EmailOutbox(recipient, rendered.getSubject(), rendered.getText());
+        email.setHtmlBody(rendered.getHtml());
+        return email;
     }
 
     /**
-     * Send email using SMTP
+     * Deliver a batch of outbox emails over a single SMTP connection.
+     * Each email is sent independently; if the connection drops, the rest of the batch continues on a new one.
      */
-    private CompletionStage<Boolean> sendEmail(String toEmail, String subject, String body) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                Properties props = new Properties();
-                props.put("mail.smtp.host", smtpHost);
-                props.put("mail.smtp.port", smtpPort);
-                props.put("mail.smtp.auth", smtpAuth);
-                props.put("mail.smtp.starttls.enable", smtpStartTls);
-
-                Session session = Session.getInstance(props, new Authenticator() {
-                    @Override
-                    protected PasswordAuthentication getPasswordAuthentication() {
-                        return new PasswordAuthentication(smtpUsername, smtpPassword);
+    public CompletionStage<BatchResult> deliverBatch(List<EmailOutbox> emails) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                BatchResult result = new BatchResult();
+                SmtpTransportPool.Borrowed borrowed = null;
+                try {
+                    for (EmailOutbox email : emails) {
+                        try {
+                            Message message = createMessage(email);
+                            if (borrowed == null) {
+                                borrowed = transportPool.borrow();
+                            }
+                            borrowed.getTransport().sendMessage(message, message.getAllRecipients());
+                            result.sentIds.add(email.getId());
+                        } catch (Exception e) {
+                            logger.warn("Failed to send outbox email {} to {}", email.getId(), email.getRecipient(), e);
+                            result.failures.put(email.getId(), String.valueOf(e.getMessage()));
+                            if (borrowed != null && !borrowed.getTransport().isConnected()) {
+                                transportPool.release(borrowed.getTransport(), false);
+                                borrowed = null;
+                            }
+                        }
+                    }
+                } finally {
+                    if (borrowed != null) {
+                        transportPool.release(borrowed.getTransport(), true);
                     }
-                });
-
-                Message message = new MimeMessage(session);
-                message.setFrom(new InternetAddress(fromEmail, fromName));
-                message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(toEmail));
-                message.setSubject(subject);
-                message.setText(body);
-
-                Transport.send(message);
-                System.out.println("Email sent successfully to: " + toEmail);
-                return true;
-
-            } catch (Exception e) {
-                System.err.println("Failed to send email to " + toEmail + ": " + e.getMessage());
-                e.printStackTrace();
-                return false;
+                }
+                logger.info("Delivered {} of {} outbox emails", result.sentIds.size(), emails.size());
+                return result;
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            // The emails stay leased and are picked up again once the lease expires
+            logger.warn("Email queue is full ({} queued), postponing {} outbox emails", executor.getQueue().size(), emails.size());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Connection reuse counters of the SMTP pool and the send queue depth
+     */
+    public SmtpTransportPool getTransportPool() {
+        return transportPool;
+    }
+
+    public int getQueuedEmails() {
+        return executor.getQueue().size();
+    }
+
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
             }
-        }, classLoaderExecutionContext.current());
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        transportPool.close();
+    }
+
+    /**
+     * Send email using SMTP
+     */
+    private CompletionStage<Boolean> sendEmail(EmailOutbox email) {
+        String toEmail = email.getRecipient();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Message message = createMessage(email);
+                    send(message);
+                    logger.info("Email sent successfully to: {}", toEmail);
+                    return true;
+
+                } catch (Exception e) {
+                    logger.error("Failed to send email to {}", toEmail, e);
+                    return false;
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Email queue is full ({} queued), skipping email to {}", executor.getQueue().size(), toEmail);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * Build the MIME message: multipart/alternative with a text/plain and a text/html part,
+     * or plain text only for emails queued before HTML parts existed
+     */
+    private Message createMessage(EmailOutbox email) throws Exception {
+        Message message = new MimeMessage(session);
+        message.setFrom(new InternetAddress(fromEmail, fromName));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email.getRecipient()));
+        message.setSubject(email.getSubject());
+        if (email.getHtmlBody() == null) {
+            message.setText(email.getBody());
+        } else {
+            MimeBodyPart textPart = new MimeBodyPart();
+            textPart.setText(email.getBody(), "UTF-8");
+            MimeBodyPart htmlPart = new MimeBodyPart();
+            htmlPart.setText(email.getHtmlBody(), "UTF-8", "html");
+            // Clients show the last part they understand, so the HTML part comes last
+            message.setContent(new MimeMultipart("alternative", textPart, htmlPart));
+        }
+        message.saveChanges();
+        return message;
+    }
+
+    /**
+     * Send on a pooled connection. A reused connection may have been dropped by the server since
+     * its last health check, so a failure on one is retried once on another connection.
+     */
+    private void send(Message message) throws MessagingException {
+        SmtpTransportPool.Borrowed borrowed = transportPool.borrow();
+        boolean healthy = false;
+        try {
+            borrowed.getTransport().sendMessage(message, message.getAllRecipients());
+            healthy = true;
+            return;
+        } catch (MessagingException e) {
+            if (!borrowed.isReused()) {
+                throw e;
+            }
+            logger.debug("Pooled SMTP connection failed, retrying on another connection", e);
+        } finally {
+            transportPool.release(borrowed.getTransport(), healthy);
+        }
+        SmtpTransportPool.Borrowed retry = transportPool.borrow();
+        boolean retryHealthy = false;
+        try {
+            retry.getTransport().sendMessage(message, message.getAllRecipients());
+            retryHealthy = true;
+        } finally {
+            transportPool.release(retry.getTransport(), retryHealthy);
+        }
+    }
+
+    /**
+     * Outcome of {@link #deliverBatch(List)}: ids of the delivered emails and the error of each failed one
+     */
+    public static class BatchResult {
+
+        private final List<Long> sentIds = new ArrayList<>();
+        private final Map<Long, String> failures = new LinkedHashMap<>();
+
+        public List<Long> getSentIds() {
+            return sentIds;
+        }
+
+        public Map<Long, String> getFailures() {
+            return failures;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Email template parsed once into a list of literal and variable segments.
+ *
+ * Placeholders are written as {@code {{name}}} and are resolved to positions in the variable list
+ * when the template is compiled, so rendering is a single pass that appends straight into the
+ * caller's buffer without formatting, regex or map lookups. HTML templates escape variable values
+ * while they are copied.
+ */
+public final class EmailTemplate {
+
+    public enum Escaping {
+        NONE,
+        HTML
+    }
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // A literal segment has a text and index -1, a variable segment has no text
+    private final String[] literals;
+    private final int[] variableIndexes;
+    private final int variableCount;
+    private final Escaping escaping;
+
+    private EmailTemplate(String[] literals, int[] variableIndexes, int variableCount, Escaping escaping) {
+        this.literals = literals;
+        this.variableIndexes = variableIndexes;
+        this.variableCount = variableCount;
+        this.escaping = escaping;
+    }
+
+    /**
+     * Parse a template. Values are passed to {@link #render} in the order of the variable names.
+     *
+     * @throws IllegalArgumentException if the template uses an unknown variable or an unclosed placeholder
+     */
+    public static EmailTemplate compile(String source, Escaping escaping, String... variables) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<String> names = Arrays.asList(variables);
+
+        int position = 0;
+        while (position < source.length()) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+            }
+            String name = source.substring(open + OPEN.length(), close).trim();
+            int index = names.indexOf(name);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown template variable: " + name);
+            }
+            if (open > position) {
+                literals.add(source.substring(position, open));
+                indexes.add(-1);
+            }
+            literals.add(null);
+            indexes.add(index);
+            position = close + CLOSE.length();
+        }
+        if (position < source.length()) {
+            literals.add(source.substring(position));
+            indexes.add(-1);
+        }
+
+        return new EmailTemplate(literals.toArray(new String[0]),
+                indexes.stream().mapToInt(Integer::intValue).toArray(), variables.length, escaping);
+    }
+
+    /**
+     * Append the rendered template to the buffer
+     */
+    public void render(StringBuilder out, String... values) {
+        if (values.length != variableCount) {
+            throw new IllegalArgumentException("Expected " + variableCount + " values but got " + values.length);
+        }
+        for (int i = 0; i < literals.length; i++) {
+            int index = variableIndexes[i];
+            if (index < 0) {
+                out.append(literals[i]);
+            } else if (escaping == Escaping.HTML) {
+                appendHtmlEscaped(out, values[index]);
+            } else {
+                out.append(values[index]);
+            }
+        }
+    }
+
+    private static void appendHtmlEscaped(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\'':
+                    out.append("&#39;");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+}
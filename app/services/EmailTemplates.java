@@ -0,0 +1,126 @@
+package services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The email templates of the portal, loaded from {@code conf/email} and compiled once.
+ *
+ * Each kind has a {@code <name>.txt} template whose first line is the subject and whose remaining
+ * lines are the plain-text body, and a {@code <name>.html} template for the HTML part. Rendering
+ * reuses a per-thread buffer, so building an email allocates little more than the resulting strings.
+ */
+public class EmailTemplates {
+
+    /**
+     * Template kinds and the variables they accept, in the order values are passed to {@link #render}
+     */
+    public enum Kind {
+        WELCOME("welcome", "username", "email"),
+        PASSWORD_RESET("password-reset", "username", "resetUrl");
+
+        private final String name;
+        private final String[] variables;
+
+        Kind(String name, String... variables) {
+            this.name = name;
+            this.variables = variables;
+        }
+    }
+
+    // Buffers that grew beyond this are dropped instead of being kept for the next render
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final Map<Kind, Compiled> templates = new EnumMap<>(Kind.class);
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    public EmailTemplates() {
+        for (Kind kind : Kind.values()) {
+            String text = load("email/" + kind.name + ".txt");
+            int newline = text.indexOf('\n');
+            if (newline < 0) {
+                throw new IllegalStateException("Email template " + kind.name + ".txt has no body");
+            }
+            templates.put(kind, new Compiled(
+                    EmailTemplate.compile(text.substring(0, newline).trim(), EmailTemplate.Escaping.NONE, kind.variables),
+                    EmailTemplate.compile(text.substring(newline + 1), EmailTemplate.Escaping.NONE, kind.variables),
+                    EmailTemplate.compile(load("email/" + kind.name + ".html"), EmailTemplate.Escaping.HTML, kind.variables)));
+        }
+    }
+
+    /**
+     * Render subject, plain-text and HTML body of an email
+     */
+    public Rendered render(Kind kind, String... values) {
+        Compiled compiled = templates.get(kind);
+        return new Rendered(renderToString(compiled.subject, values), renderToString(compiled.text, values),
+                renderToString(compiled.html, values));
+    }
+
+    private String renderToString(EmailTemplate template, String... values) {
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        template.render(buffer, values);
+        String result = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+        return result;
+    }
+
+    private static String load(String resource) {
+        try (InputStream in = EmailTemplates.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Email template not found on the classpath: " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read email template " + resource, e);
+        }
+    }
+
+    private static class Compiled {
+
+        private final EmailTemplate subject;
+        private final EmailTemplate text;
+        private final EmailTemplate html;
+
+        Compiled(EmailTemplate subject, EmailTemplate text, EmailTemplate html) {
+            this.subject = subject;
+            this.text = text;
+            this.html = html;
+        }
+    }
+
+    /**
+     * A rendered email
+     */
+    public static class Rendered {
+
+        private final String subject;
+        private final String text;
+        private final String html;
+
+        Rendered(String subject, String text, String html) {
+            this.subject = subject;
+            this.text = text;
+            this.html = html;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package services;
+
+import javax.inject.Singleton;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * JVM gauges (heap, GC, threads, CPU) in the Prometheus text format, read from the platform MXBeans at scrape time
+ */
+@Singleton
+public class JvmMetrics {
+
+    public void writePrometheus(StringBuilder out) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        gaugeHeader(out, "jvm_memory_used_bytes", "Used memory by area");
+        area(out, "jvm_memory_used_bytes", "heap", heap.getUsed());
+        area(out, "jvm_memory_used_bytes", "nonheap", nonHeap.getUsed());
+        gaugeHeader(out, "jvm_memory_committed_bytes", "Committed memory by area");
+        area(out, "jvm_memory_committed_bytes", "heap", heap.getCommitted());
+        area(out, "jvm_memory_committed_bytes", "nonheap", nonHeap.getCommitted());
+        gaugeHeader(out, "jvm_memory_max_bytes", "Maximum heap size, -1 when undefined");
+        area(out, "jvm_memory_max_bytes", "heap", heap.getMax());
+
+        out.append("# HELP jvm_gc_collection_seconds Time spent in garbage collections by collector\n");
+        out.append("# TYPE jvm_gc_collection_seconds summary\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String labels = "{gc=\"" + gc.getName() + "\"} ";
+            out.append("jvm_gc_collection_seconds_count").append(labels).append(Math.max(0, gc.getCollectionCount())).append('\n');
+            out.append("jvm_gc_collection_seconds_sum").append(labels).append(Math.max(0, gc.getCollectionTime()) / 1000.0).append('\n');
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        gaugeHeader(out, "jvm_threads_current", "Live threads");
+        out.append("jvm_threads_current ").append(threads.getThreadCount()).append('\n');
+        gaugeHeader(out, "jvm_threads_daemon", "Live daemon threads");
+        out.append("jvm_threads_daemon ").append(threads.getDaemonThreadCount()).append('\n');
+
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            long cpuNanos = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+            if (cpuNanos >= 0) {
+                out.append("# HELP process_cpu_seconds_total CPU time used by the process\n");
+                out.append("# TYPE process_cpu_seconds_total counter\n");
+                out.append("process_cpu_seconds_total ").append(cpuNanos / 1e9).append('\n');
+            }
+        }
+        gaugeHeader(out, "process_start_time_seconds", "Start time of the process since the Unix epoch");
+        out.append("process_start_time_seconds ").append(ManagementFactory.getRuntimeMXBean().getStartTime() / 1000.0).append('\n');
+    }
+
+    private static void gaugeHeader(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+    }
+
+    private static void area(StringBuilder out, String name, String area, long value) {
+        out.append(name).append("{area=\"").append(area).append("\"} ").append(value).append('\n');
+    }
+}
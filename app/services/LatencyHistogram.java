@@ -0,0 +1,99 @@
+package services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HdrHistogram-style log-linear buckets.
+ *
+ * Values are kept in microseconds. Every power of two is split into 16 linear sub-buckets, so a value
+ * is known to within about 6% over the whole range (up to 2^36 µs, about 19 hours; slower values land in
+ * the last bucket). Recording is an index computation and two atomic adds, without allocation or locks,
+ * so it can stay enabled on every request. Readers may see a recording half done (count without sum),
+ * which is fine for monitoring.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int MAX_MAGNITUDE = 36;
+    static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value / 1000));
+        sumNanos.addAndGet(value);
+    }
+
+    public long sumNanos() {
+        return sumNanos.get();
+    }
+
+    /**
+     * Number of values below each bound (in microseconds, ascending), followed by the total count.
+     * A value counts as below a bound when the lower end of its bucket is.
+     */
+    public long[] cumulativeCounts(long[] boundsMicros) {
+        long[] cumulative = new long[boundsMicros.length + 1];
+        int bound = 0;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count == 0) {
+                continue;
+            }
+            long lower = lowerBound(i);
+            while (bound < boundsMicros.length && lower >= boundsMicros[bound]) {
+                cumulative[bound++] = total;
+            }
+            total += count;
+        }
+        while (bound < boundsMicros.length) {
+            cumulative[bound++] = total;
+        }
+        cumulative[boundsMicros.length] = total;
+        return cumulative;
+    }
+
+    /**
+     * Value (in microseconds, the lower end of its bucket) below which the given fraction of values lie
+     */
+    public long valueAtQuantile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen > 0 && seen >= rank) {
+                return lowerBound(i);
+            }
+        }
+        return 0;
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+}
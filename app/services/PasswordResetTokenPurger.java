@@ -0,0 +1,32 @@
+package services;
+
+import com.typesafe.config.Config;
+import org.apache.pekko.actor.ActorSystem;
+import play.inject.ApplicationLifecycle;
+import repositoryies.PasswordResetTokenRepository;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntFunction;
+
+/**
+ * Background job that removes expired and used password reset tokens, in chunks as configured by
+ * {@code passwordResetToken.purge} (see {@link ChunkedPurger}). Registered as an eager singleton in {@link Module}.
+ */
+@Singleton
+public class PasswordResetTokenPurger extends ChunkedPurger {
+
+    private static final String ROWS = "expired or used password reset tokens";
+
+    @Inject
+    public PasswordResetTokenPurger(Config config, PasswordResetTokenRepository passwordResetTokenRepository,
+                                    ActorSystem actorSystem, ApplicationLifecycle lifecycle) {
+        super(ROWS, passwordResetTokenRepository::deleteExpiredOrUsedChunk,
+                config.getConfig("passwordResetToken.purge"), actorSystem, lifecycle);
+    }
+
+    PasswordResetTokenPurger(IntFunction<CompletionStage<Integer>> deleteChunk, int chunkSize, int maxChunksPerRun) {
+        super(ROWS, deleteChunk, chunkSize, maxChunksPerRun);
+    }
+}
@@ -0,0 +1,173 @@
+package services;
+
+import com.typesafe.config.Config;
+import org.mindrot.jbcrypt.BCrypt;
+import play.inject.ApplicationLifecycle;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Service that hashes and verifies passwords with BCrypt on a dedicated "crypto" executor.
+ *
+ * BCrypt deliberately costs tens of milliseconds of CPU per call, so it must not run on the
+ * default dispatcher that renders pages. The executor has a fixed number of threads and a
+ * bounded queue; when both are full new work is rejected immediately with a
+ * {@link RejectedExecutionException}, which {@code ErrorHandler} turns into 503.
+ *
+ * The BCrypt cost is calibrated once at startup: the largest cost between
+ * {@code crypto.bcrypt.minCost} and {@code crypto.bcrypt.maxCost} whose hash time stays within
+ * {@code crypto.bcrypt.targetLatency} on this machine. The cost is part of every hash
+ * ("$2a$12$..."), so hashes with a lower cost can be detected with {@link #needsRehash(String)}
+ * and upgraded after a successful login. Hashes with a higher cost are kept: nodes calibrate on their own
+ * hardware, and downgrading would weaken the hash and make it flip between costs across nodes.
+ */
+@Singleton
+public class PasswordService {
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PasswordService.class);
+
+    // BCrypt time does not depend on the password, so any fixed value will do for calibration
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final ThreadPoolExecutor executor;
+    private final int cost;
+
+    @Inject
+    public PasswordService(Config config, ApplicationLifecycle lifecycle) {
+        this(config.getInt("crypto.executor.threads"), config.getInt("crypto.executor.queueSize"),
+                calibrateCost(config.getDuration("crypto.bcrypt.targetLatency"),
+                        config.getInt("crypto.bcrypt.minCost"), config.getInt("crypto.bcrypt.maxCost")));
+        logger.info("BCrypt cost calibrated to {} for a target latency of {}", cost, config.getDuration("crypto.bcrypt.targetLatency"));
+        lifecycle.addStopHook(() -> {
+            shutdown();
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    PasswordService(int threads, int queueSize, int cost) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new CryptoThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.cost = cost;
+    }
+
+    /**
+     * Find the largest cost whose hash time does not exceed the target latency.
+     * Each extra cost step doubles the work, so only the minimum cost is measured and the rest is extrapolated.
+     */
+    static int calibrateCost(Duration targetLatency, int minCost, int maxCost) {
+        // Warm up the JIT before measuring
+        BCrypt.hashpw(CALIBRATION_PASSWORD, BCrypt.gensalt(minCost));
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw(CALIBRATION_PASSWORD, BCrypt.gensalt(minCost));
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        int cost = minCost;
+        long estimated = best;
+        while (cost < maxCost && estimated * 2 <= targetLatency.toNanos()) {
+            cost++;
+            estimated *= 2;
+        }
+        return cost;
+    }
+
+    /**
+     * BCrypt cost used for new hashes
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * Hash a plain text password at the calibrated cost
+     */
+    public CompletionStage<String> hash(String password) {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    /**
+     * Whether the hash was made with a lower cost than the calibrated one, or is not a BCrypt hash
+     */
+    public boolean needsRehash(String hashedPassword) {
+        return costOf(hashedPassword) < cost;
+    }
+
+    /**
+     * Read the cost from a "$2a$NN$..." hash; -1 if it is not a BCrypt hash
+     */
+    static int costOf(String hashedPassword) {
+        if (hashedPassword == null || hashedPassword.length() < 7 || hashedPassword.charAt(0) != '$') {
+            return -1;
+        }
+        int separator = hashedPassword.indexOf('$', 1);
+        if (separator < 0 || hashedPassword.length() < separator + 3) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hashedPassword.substring(separator + 1, separator + 3));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Check a plain text password against a stored BCrypt hash
+     */
+    public CompletionStage<Boolean> verify(String password, String hashedPassword) {
+        return submit(() -> hashedPassword != null && BCrypt.checkpw(password, hashedPassword));
+    }
+
+    /**
+     * Number of tasks waiting for a crypto thread
+     */
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletionStage<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Crypto executor saturated ({} queued), rejecting password operation", executor.getQueue().size());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static class CryptoThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "crypto-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
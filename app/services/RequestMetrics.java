@@ -0,0 +1,119 @@
+package services;
+
+import play.api.routing.HandlerDef;
+
+import javax.inject.Singleton;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request latency per route (controller method) and status class, written by {@link filters.MetricsFilter}
+ * and exported in the Prometheus text format.
+ *
+ * The generated router creates one {@link HandlerDef} per route, so routes are looked up by identity in a
+ * copy-on-write map: after the first request of a route the lookup reads a plain {@link IdentityHashMap}
+ * without locking or allocating.
+ */
+@Singleton
+public class RequestMetrics {
+
+    /**
+     * Upper bounds of the exported histogram buckets, in microseconds
+     */
+    static final long[] BUCKET_BOUNDS_MICROS = {
+        1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000
+    };
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    // Guards against a router that creates handler definitions per request
+    private static final int MAX_HANDLERS = 1024;
+
+    private final ConcurrentHashMap<String, Route> routesByName = new ConcurrentHashMap<>();
+    private volatile IdentityHashMap<HandlerDef, Route> routesByHandler = new IdentityHashMap<>();
+    private final Route unmatched = routesByName.computeIfAbsent("unmatched", Route::new);
+
+    /**
+     * The route of a handler, or the route of requests that matched none when {@code handler} is null
+     */
+    public Route route(HandlerDef handler) {
+        if (handler == null) {
+            return unmatched;
+        }
+        Route route = routesByHandler.get(handler);
+        return route != null ? route : register(handler);
+    }
+
+    private synchronized Route register(HandlerDef handler) {
+        Route route = routesByHandler.get(handler);
+        if (route != null) {
+            return route;
+        }
+        String controller = handler.controller();
+        String name = controller.substring(controller.lastIndexOf('.') + 1) + "." + handler.method();
+        route = routesByName.computeIfAbsent(name, Route::new);
+        if (routesByHandler.size() < MAX_HANDLERS) {
+            IdentityHashMap<HandlerDef, Route> copy = new IdentityHashMap<>(routesByHandler);
+            copy.put(handler, route);
+            routesByHandler = copy;
+        }
+        return route;
+    }
+
+    /**
+     * Appends the {@code http_server_requests_seconds} histogram of every route
+     */
+    public void writePrometheus(StringBuilder out) {
+        out.append("# HELP http_server_requests_seconds Time until the response header, by route and status class\n");
+        out.append("# TYPE http_server_requests_seconds histogram\n");
+        for (Route route : new TreeMap<>(routesByName).values()) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                LatencyHistogram histogram = route.histograms[i];
+                long[] cumulative = histogram.cumulativeCounts(BUCKET_BOUNDS_MICROS);
+                long count = cumulative[BUCKET_BOUNDS_MICROS.length];
+                if (count == 0) {
+                    continue;
+                }
+                String labels = "route=\"" + route.name + "\",status=\"" + STATUS_CLASSES[i] + "\"";
+                for (int b = 0; b < BUCKET_BOUNDS_MICROS.length; b++) {
+                    out.append("http_server_requests_seconds_bucket{").append(labels).append(",le=\"")
+                            .append(seconds(BUCKET_BOUNDS_MICROS[b] * 1000)).append("\"} ").append(cumulative[b]).append('\n');
+                }
+                out.append("http_server_requests_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+                out.append("http_server_requests_seconds_sum{").append(labels).append("} ").append(seconds(histogram.sumNanos())).append('\n');
+                out.append("http_server_requests_seconds_count{").append(labels).append("} ").append(count).append('\n');
+            }
+        }
+    }
+
+    static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    /**
+     * Histograms of one route, one per status class
+     */
+    public static final class Route {
+
+        private final String name;
+        private final LatencyHistogram[] histograms = new LatencyHistogram[STATUS_CLASSES.length];
+
+        Route(String name) {
+            this.name = name;
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Record one request; allocation-free
+         */
+        public void record(int status, long nanos) {
+            int statusClass = status / 100 - 1;
+            histograms[statusClass >= 0 && statusClass < histograms.length ? statusClass : histograms.length - 1].record(nanos);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package services;
+
+import com.typesafe.config.Config;
+import models.User;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Stateless password reset tokens: {@code <userId>.<expiresAtEpochSecond>.<signature>}.
+ *
+ * The signature is an HMAC-SHA256 with {@code play.http.secret.key} over the user id, the expiry
+ * and the user's current password hash. Nothing is stored, so checking a token costs one HMAC and
+ * the user lookup the reset needs anyway. A token stops working once the password was changed,
+ * because the hash it was signed with no longer matches.
+ *
+ * Whether new tokens are issued this way or as {@code password_reset_token} rows is selected with
+ * {@code passwordReset.tokenMode}; signed tokens are always accepted.
+ */
+@Singleton
+public class SignedPasswordResetTokens {
+
+    public enum TokenMode {
+        DATABASE,
+        SIGNED
+    }
+
+    private static final String ALGORITHM = "HmacSHA256";
+    // Keeps these signatures apart from anything else signed with the application secret
+    private static final String PURPOSE = "password-reset:";
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+    private final boolean enabled;
+
+    @Inject
+    public SignedPasswordResetTokens(Config config, Clock clock) {
+        this(config.getString("play.http.secret.key").getBytes(StandardCharsets.UTF_8),
+                config.getDuration("passwordReset.signedTokenTtl"), clock,
+                config.getEnum(TokenMode.class, "passwordReset.tokenMode") == TokenMode.SIGNED);
+    }
+
+    SignedPasswordResetTokens(byte[] secret, Duration ttl, Clock clock, boolean enabled) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Whether new reset tokens should be signed instead of stored
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Issue a token for the user's current password
+     */
+    public String create(User user) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        return user.getId() + "." + expiresAt + "." + sign(user.getId(), expiresAt, user.getPassword());
+    }
+
+    /**
+     * Check format and expiry; the signature needs the user and is checked with {@link #verify}
+     */
+    public Optional<Claims> parse(String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if (second < 0) {
+            return Optional.empty();
+        }
+        try {
+            long userId = Long.parseLong(token.substring(0, first));
+            long expiresAt = Long.parseLong(token.substring(first + 1, second));
+            if (clock.instant().getEpochSecond() >= expiresAt) {
+                return Optional.empty();
+            }
+            return Optional.of(new Claims(userId, expiresAt, token.substring(second + 1)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether the token was issued for this user and their current password
+     */
+    public boolean verify(Claims claims, User user) {
+        if (!user.getId().equals(claims.userId)) {
+            return false;
+        }
+        String expected = sign(claims.userId, claims.expiresAt, user.getPassword());
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                claims.signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(Long userId, long expiresAt, String passwordHash) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal((PURPOSE + userId + "." + expiresAt + "." + passwordHash)
+                    .getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * The unverified contents of a well-formed, unexpired token
+     */
+    public static class Claims {
+
+        private final Long userId;
+        private final long expiresAt;
+        private final String signature;
+
+        Claims(Long userId, long expiresAt, String signature) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.signature = signature;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public Instant getExpiresAt() {
+            return Instant.ofEpochSecond(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded queue in front of the Slack webhook.
+ *
+ * Notifications are queued without blocking the caller. A single drainer thread waits for the
+ * first pending message, keeps collecting until the flush interval has passed or the batch is
+ * full, and posts the whole batch as one webhook message. When the queue is full the overflow
+ * policy decides whether the oldest pending message is dropped or the caller waits (up to the
+ * block timeout) for space.
+ *
+ * The drainer is started by the first message and exits once the queue has been empty for a
+ * second, or when {@link #stop()} is called; the next message starts a new one.
+ * A queue that is never stopped therefore does not keep a thread alive.
+ */
+public class SlackMessageQueue {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        BLOCK
+    }
+
+    private static final String SEPARATOR = "\n\n";
+    private static final long IDLE_TIMEOUT_SECONDS = 1;
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SlackMessageQueue.class);
+
+    private final ArrayBlockingQueue<PendingMessage> queue;
+    private final Function<String, CompletionStage<Void>> sender;
+    private final long flushIntervalNanos;
+    private final int maxBatchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong sentMessageCount = new AtomicLong();
+    private volatile long lastFlushLatencyMillis;
+    private volatile long maxFlushLatencyMillis;
+
+    // Current drainer, guarded by "this"
+    private Thread drainer;
+
+    public SlackMessageQueue(Function<String, CompletionStage<Void>> sender, int capacity, Duration flushInterval,
+                             int maxBatchSize, OverflowPolicy overflowPolicy, Duration blockTimeout) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.sender = sender;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = blockTimeout.toNanos();
+    }
+
+    /**
+     * Queue a message; the returned stage completes once the batch containing it was posted or the message was dropped
+     */
+    public CompletionStage<Void> enqueue(String text) {
+        PendingMessage message = new PendingMessage(text, System.nanoTime());
+
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                if (!queue.offer(message, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                    drop(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drop(message);
+            }
+        } else {
+            while (!queue.offer(message)) {
+                PendingMessage oldest = queue.poll();
+                if (oldest != null) {
+                    drop(oldest);
+                }
+            }
+        }
+        // After the offer, so that an idle drainer cannot exit between the check and the message arriving
+        startIfNeeded();
+        return message.done;
+    }
+
+    /**
+     * Stop the drainer after posting whatever is still pending
+     */
+    public synchronized CompletionStage<Void> stop() {
+        if (drainer == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Thread stopping = drainer;
+        drainer = null;
+        stopping.interrupt();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                stopping.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    public Stats stats() {
+        return new Stats(queue.size(), droppedCount.get(), flushCount.get(), sentMessageCount.get(),
+                lastFlushLatencyMillis, maxFlushLatencyMillis);
+    }
+
+    /**
+     * Whether a drainer thread is currently running
+     */
+    synchronized boolean isDraining() {
+        return drainer != null;
+    }
+
+    private synchronized void startIfNeeded() {
+        if (drainer != null) {
+            return;
+        }
+        drainer = new Thread(this::drainLoop, "slack-notification-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Called by an idle drainer; true when it may exit because nothing arrived in the meantime
+     */
+    private synchronized boolean retireIfIdle() {
+        if (!queue.isEmpty()) {
+            return false;
+        }
+        if (drainer == Thread.currentThread()) {
+            drainer = null;
+        }
+        return true;
+    }
+
+    private void drainLoop() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                PendingMessage first = queue.poll(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (retireIfIdle()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = first.enqueuedAt + flushIntervalNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // stop() was called; fall through and flush what has been collected
+                stopped = true;
+            }
+
+            flush(batch);
+            batch.clear();
+        }
+
+        // Post the remaining messages before the application stops
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, maxBatchSize);
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        String text;
+        if (batch.size() == 1) {
+            text = batch.get(0).text;
+        } else {
+            StringBuilder builder = new StringBuilder("📦 *").append(batch.size()).append("件の通知*");
+            for (PendingMessage message : batch) {
+                builder.append(SEPARATOR).append(message.text);
+            }
+            text = builder.toString();
+        }
+
+        try {
+            // Wait for the post so only one webhook request is in flight at a time
+            sender.apply(text).toCompletableFuture().join();
+        } catch (Exception e) {
+            logger.warn("Failed to post {} Slack notifications", batch.size(), e);
+        }
+
+        long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batch.get(0).enqueuedAt);
+        lastFlushLatencyMillis = latencyMillis;
+        if (latencyMillis > maxFlushLatencyMillis) {
+            maxFlushLatencyMillis = latencyMillis;
+        }
+        flushCount.incrementAndGet();
+        sentMessageCount.addAndGet(batch.size());
+        for (PendingMessage message : batch) {
+            message.done.complete(null);
+        }
+    }
+
+    private void drop(PendingMessage message) {
+        droppedCount.incrementAndGet();
+        message.done.complete(null);
+    }
+
+    private static class PendingMessage {
+
+        private final String text;
+        private final long enqueuedAt;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingMessage(String text, long enqueuedAt) {
+            this.text = text;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * Queue metrics, exposed on the diagnostics endpoint
+     */
+    public static class Stats {
+
+        private final int queueDepth;
+        private final long droppedCount;
+        private final long flushCount;
+        private final long sentMessageCount;
+        private final long lastFlushLatencyMillis;
+        private final long maxFlushLatencyMillis;
+
+        Stats(int queueDepth, long droppedCount, long flushCount, long sentMessageCount,
+              long lastFlushLatencyMillis, long maxFlushLatencyMillis) {
+            this.queueDepth = queueDepth;
+            this.droppedCount = droppedCount;
+            this.flushCount = flushCount;
+            this.sentMessageCount = sentMessageCount;
+            this.lastFlushLatencyMillis = lastFlushLatencyMillis;
+            this.maxFlushLatencyMillis = maxFlushLatencyMillis;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getDroppedCount() {
+            return droppedCount;
+        }
+
+        public long getFlushCount() {
+            return flushCount;
+        }
+
+        public long getSentMessageCount() {
+            return sentMessageCount;
+        }
+
+        public long getLastFlushLatencyMillis() {
+            return lastFlushLatencyMillis;
+        }
+
+        public long getMaxFlushLatencyMillis() {
+            return maxFlushLatencyMillis;
+        }
+    }
+}
@@ -3,35 +3,106 @@ package services;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import models.User;
+import play.inject.ApplicationLifecycle;
 import play.libs.concurrent.ClassLoaderExecutionContext;
 import play.libs.ws.WSClient;
 import play.libs.ws.WSRequest;
+import play.libs.ws.WSResponse;
 import play.mvc.Http;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Service for sending notifications to Slack webhooks
+ * Service for sending notifications to Slack webhooks.
+ * Notifications go through a {@link SlackMessageQueue}, which merges them into one webhook post per flush.
  */
 @Singleton
 public class SlackNotificationService {
 
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SlackNotificationService.class);
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
     private final WSClient wsClient;
     private final ClassLoaderExecutionContext classLoaderExecutionContext;
     private final String slackWebhookUrl;
     private final ObjectMapper objectMapper;
+    private final SlackMessageQueue messageQueue;
+
+    // Delivery settings
+    private final Duration requestTimeout;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    // Circuit breaker state, guarded by "this"
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong shortCircuitedCount = new AtomicLong();
 
     @Inject
+    public SlackNotificationService(WSClient wsClient,
+                                   ClassLoaderExecutionContext classLoaderExecutionContext,
+                                   Config config,
+                                   ApplicationLifecycle lifecycle) {
+        this(wsClient, classLoaderExecutionContext, System.getenv("SLACK_WEBHOOK_URL"), config);
+        lifecycle.addStopHook(messageQueue::stop);
+    }
+
     public SlackNotificationService(WSClient wsClient, 
                                    ClassLoaderExecutionContext classLoaderExecutionContext) {
+        this(wsClient, classLoaderExecutionContext, System.getenv("SLACK_WEBHOOK_URL"), ConfigFactory.load());
+    }
+
+    SlackNotificationService(WSClient wsClient,
+                             ClassLoaderExecutionContext classLoaderExecutionContext,
+                             String slackWebhookUrl,
+                             Config config) {
         this.wsClient = wsClient;
         this.classLoaderExecutionContext = classLoaderExecutionContext;
-        this.slackWebhookUrl = System.getenv("SLACK_WEBHOOK_URL");
+        this.slackWebhookUrl = slackWebhookUrl;
         this.objectMapper = new ObjectMapper();
+        this.requestTimeout = config.getDuration("slack.delivery.requestTimeout");
+        this.maxAttempts = config.getInt("slack.delivery.maxAttempts");
+        this.initialBackoff = config.getDuration("slack.delivery.initialBackoff");
+        this.maxBackoff = config.getDuration("slack.delivery.maxBackoff");
+        this.failureThreshold = config.getInt("slack.delivery.circuitBreaker.failureThreshold");
+        this.openDuration = config.getDuration("slack.delivery.circuitBreaker.openDuration");
+        this.messageQueue = new SlackMessageQueue(
+                this::postToWebhook,
+                config.getInt("slack.queue.capacity"),
+                config.getDuration("slack.queue.flushInterval"),
+                config.getInt("slack.queue.maxBatchSize"),
+                config.getEnum(SlackMessageQueue.OverflowPolicy.class, "slack.queue.overflowPolicy"),
+                config.getDuration("slack.queue.blockTimeout"));
     }
 
     /**
@@ -184,61 +255,278 @@ public class SlackNotificationService {
     }
 
     /**
-     * Send message to Slack webhook
+     * Queue message for the Slack webhook
      */
     private CompletionStage<Void> sendSlackMessage(String message) {
-        try {
-            ObjectNode payload = objectMapper.createObjectNode();
-            payload.put("text", message);
+        return messageQueue.enqueue(message);
+    }
+
+    /**
+     * Queue depth, dropped count and flush latency of the notification queue
+     */
+    public SlackMessageQueue.Stats getQueueStats() {
+        return messageQueue.stats();
+    }
+
+    /**
+     * Counters and circuit breaker state of webhook delivery
+     */
+    public synchronized DeliveryStats getDeliveryStats() {
+        return new DeliveryStats(currentCircuitState(), consecutiveFailures, deliveredCount.get(), failedCount.get(),
+                retryCount.get(), rateLimitedCount.get(), shortCircuitedCount.get());
+    }
+
+    /**
+     * Post one (possibly merged) message to the Slack webhook.
+     * Failed attempts are retried with exponential backoff (honouring Retry-After on 429); while the
+     * circuit breaker is open the webhook is not called at all. The returned stage never fails.
+     */
+    CompletionStage<Void> postToWebhook(String message) {
+        Admission admission = admit();
+        if (admission == Admission.REJECTED) {
+            shortCircuitedCount.incrementAndGet();
+            logger.warn("Slack circuit breaker is open, skipping notification");
+            return CompletableFuture.completedFuture(null);
+        }
+        boolean probe = admission == Admission.PROBE;
+
+        ObjectNode payload = objectMapper.createObjectNode();
+        payload.put("text", message);
 
+        // handle rather than thenApply, so that an unexpected failure still ends the probe
+        return attempt(payload, 1).handle((delivered, error) -> {
+            if (error == null && delivered) {
+                deliveredCount.incrementAndGet();
+                onSuccess(probe);
+            } else {
+                if (error != null) {
+                    logger.warn("Unexpected error delivering Slack notification", error);
+                }
+                failedCount.incrementAndGet();
+                onFailure(probe);
+            }
+            return (Void) null;
+        });
+    }
+
+    private CompletionStage<Boolean> attempt(ObjectNode payload, int attemptNumber) {
+        CompletionStage<AttemptResult> outcome;
+        try {
             WSRequest request = wsClient.url(slackWebhookUrl)
-                    .setContentType("application/json");
-
-            return request.post(payload)
-                    .thenApplyAsync(response -> {
-                        if (response.getStatus() != 200) {
-                            // Log error but don't fail the main operation
-                            System.err.println("Failed to send Slack notification: " + response.getStatus() + " - " + response.getBody());
-                        }
-                        return (Void) null;
-                    }, classLoaderExecutionContext.current())
-                    .exceptionally(throwable -> {
-                        // Log error but don't fail the main operation
-                        System.err.println("Exception sending Slack notification: " + throwable.getMessage());
-                        return (Void) null;
-                    });
+                    .setContentType("application/json")
+                    .setRequestTimeout(requestTimeout);
+
+            outcome = request.post(payload).handleAsync((response, throwable) -> {
+                if (throwable != null) {
+                    logger.warn("Exception sending Slack notification (attempt {}): {}", attemptNumber, throwable.getMessage());
+                    return AttemptResult.retryAfter(backoff(attemptNumber));
+                }
+                int status = response.getStatus();
+                if (status >= 200 && status < 300) {
+                    return AttemptResult.DELIVERED;
+                }
+                logger.warn("Failed to send Slack notification (attempt {}): {} - {}", attemptNumber, status, response.getBody());
+                if (status == Http.Status.TOO_MANY_REQUESTS) {
+                    rateLimitedCount.incrementAndGet();
+                    return AttemptResult.retryAfter(retryAfterHeader(response)
+                            .flatMap(SlackNotificationService::parseRetryAfter)
+                            .orElse(backoff(attemptNumber)));
+                }
+                if (status >= 500) {
+                    return AttemptResult.retryAfter(backoff(attemptNumber));
+                }
+                // Other 4xx (bad URL, revoked webhook) will not succeed on retry
+                return AttemptResult.GIVE_UP;
+            }, classLoaderExecutionContext.current());
         } catch (Exception e) {
-            // Log error but don't fail the main operation
-            System.err.println("Exception creating Slack notification: " + e.getMessage());
-            return CompletableFuture.completedFuture(null);
+            logger.warn("Exception creating Slack notification: {}", e.getMessage());
+            return CompletableFuture.completedFuture(false);
         }
+
+        return outcome.thenCompose(result -> {
+            if (result == AttemptResult.DELIVERED) {
+                return CompletableFuture.completedFuture(true);
+            }
+            if (result == AttemptResult.GIVE_UP || attemptNumber >= maxAttempts) {
+                return CompletableFuture.completedFuture(false);
+            }
+            retryCount.incrementAndGet();
+            Executor delayed = CompletableFuture.delayedExecutor(
+                    Math.min(result.retryDelay.toMillis(), maxBackoff.toMillis()), TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> payload, delayed)
+                    .thenCompose(p -> attempt(p, attemptNumber + 1));
+        });
     }
 
     /**
-     * Extract client IP address from request
+     * Exponential backoff with full jitter: random between 0 and initialBackoff * 2^(attempt - 1), capped at maxBackoff
      */
-    private String getClientIpAddress(Http.Request request) {
-        // Check for X-Forwarded-For header (common in load balancers/proxies)
-        String xForwardedFor = request.header("X-Forwarded-For").orElse(null);
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            // X-Forwarded-For can contain multiple IPs, take the first one
-            return xForwardedFor.split(",")[0].trim();
+    private Duration backoff(int attemptNumber) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attemptNumber - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Header names are case-insensitive, and proxies/HTTP2 often send "retry-after"
+     */
+    private static Optional<String> retryAfterHeader(WSResponse response) {
+        return response.getHeaders().entrySet().stream()
+                .filter(header -> Http.HeaderNames.RETRY_AFTER.equalsIgnoreCase(header.getKey()))
+                .flatMap(header -> header.getValue().stream())
+                .findFirst();
+    }
+
+    /**
+     * Retry-After is either a number of seconds or an HTTP date
+     */
+    static Optional<Duration> parseRetryAfter(String value) {
+        try {
+            return Optional.of(Duration.ofSeconds(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime retryAt = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(), retryAt);
+                return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+            } catch (DateTimeParseException ignored) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Whether a delivery may call the webhook. While half open only one trial delivery (the probe) is
+     * let through at a time, however many callers there are; the others are short-circuited until it ends.
+     */
+    private synchronized Admission admit() {
+        switch (currentCircuitState()) {
+            case CLOSED:
+                return Admission.ALLOWED;
+            case HALF_OPEN:
+                if (probeInFlight) {
+                    return Admission.REJECTED;
+                }
+                probeInFlight = true;
+                return Admission.PROBE;
+            default:
+                return Admission.REJECTED;
+        }
+    }
+
+    private synchronized CircuitState currentCircuitState() {
+        if (circuitState == CircuitState.OPEN && System.nanoTime() - openedAtNanos >= openDuration.toNanos()) {
+            circuitState = CircuitState.HALF_OPEN;
+        }
+        return circuitState;
+    }
+
+    private synchronized void onSuccess(boolean probe) {
+        if (probe) {
+            probeInFlight = false;
+        }
+        consecutiveFailures = 0;
+        circuitState = CircuitState.CLOSED;
+    }
+
+    private synchronized void onFailure(boolean probe) {
+        if (probe) {
+            probeInFlight = false;
+        }
+        consecutiveFailures++;
+        if (circuitState == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (circuitState != CircuitState.OPEN) {
+                logger.warn("Opening Slack circuit breaker after {} consecutive failed deliveries", consecutiveFailures);
+            }
+            circuitState = CircuitState.OPEN;
+            openedAtNanos = System.nanoTime();
+        }
+    }
+
+    private enum Admission {
+        ALLOWED,
+        PROBE,
+        REJECTED
+    }
+
+    private static class AttemptResult {
+
+        static final AttemptResult DELIVERED = new AttemptResult(null);
+        static final AttemptResult GIVE_UP = new AttemptResult(null);
+
+        private final Duration retryDelay;
+
+        private AttemptResult(Duration retryDelay) {
+            this.retryDelay = retryDelay;
+        }
+
+        static AttemptResult retryAfter(Duration retryDelay) {
+            return new AttemptResult(retryDelay);
+        }
+    }
+
+    /**
+     * Delivery counters, exposed on the diagnostics endpoint
+     */
+    public static class DeliveryStats {
+
+        private final CircuitState circuitState;
+        private final int consecutiveFailures;
+        private final long deliveredCount;
+        private final long failedCount;
+        private final long retryCount;
+        private final long rateLimitedCount;
+        private final long shortCircuitedCount;
+
+        DeliveryStats(CircuitState circuitState, int consecutiveFailures, long deliveredCount, long failedCount,
+                      long retryCount, long rateLimitedCount, long shortCircuitedCount) {
+            this.circuitState = circuitState;
+            this.consecutiveFailures = consecutiveFailures;
+            this.deliveredCount = deliveredCount;
+            this.failedCount = failedCount;
+            this.retryCount = retryCount;
+            this.rateLimitedCount = rateLimitedCount;
+            this.shortCircuitedCount = shortCircuitedCount;
+        }
+
+        public CircuitState getCircuitState() {
+            return circuitState;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public long getDeliveredCount() {
+            return deliveredCount;
         }
 
-        // Check for X-Real-IP header
-        String xRealIp = request.header("X-Real-IP").orElse(null);
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+        public long getFailedCount() {
+            return failedCount;
         }
 
-        // Fallback to remote address
-        return request.remoteAddress();
+        public long getRetryCount() {
+            return retryCount;
+        }
+
+        public long getRateLimitedCount() {
+            return rateLimitedCount;
+        }
+
+        public long getShortCircuitedCount() {
+            return shortCircuitedCount;
+        }
+    }
+
+    /**
+     * Extract client IP address from request
+     */
+    private String getClientIpAddress(Http.Request request) {
+        return ClientInfo.getClientIpAddress(request);
     }
 
     /**
      * Extract User Agent from request
      */
     private String getUserAgent(Http.Request request) {
-        return request.header("User-Agent").orElse("Unknown");
+        return ClientInfo.getUserAgent(request);
     }
-}
\ No newline at end of file
+}
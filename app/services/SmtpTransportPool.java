@@ -0,0 +1,159 @@
+package services;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small pool of connected SMTP {@link Transport}s so that consecutive emails reuse one
+ * connection instead of paying the connect, STARTTLS and AUTH round trips every time.
+ *
+ * Idle transports are kept most-recently-used first. A borrowed transport is health checked with
+ * {@link Transport#isConnected()}, which for SMTP sends a NOOP. Transports idle for longer than the
+ * idle timeout are closed by {@link #evictIdle()} and are never handed out.
+ */
+public class SmtpTransportPool {
+
+    /**
+     * Creates and connects a new transport
+     */
+    public interface TransportFactory {
+        Transport connect() throws MessagingException;
+    }
+
+    private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    private final TransportFactory factory;
+    private final int maxIdle;
+    private final long idleTimeoutNanos;
+    private final LinkedBlockingDeque<IdleTransport> idle = new LinkedBlockingDeque<>();
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    public SmtpTransportPool(TransportFactory factory, int maxIdle, Duration idleTimeout) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * Take a healthy idle transport, or connect a new one
+     */
+    public Borrowed borrow() throws MessagingException {
+        IdleTransport candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            if (System.nanoTime() - candidate.releasedAt > idleTimeoutNanos || !candidate.transport.isConnected()) {
+                discard(candidate.transport);
+                continue;
+            }
+            reusedCount.incrementAndGet();
+            return new Borrowed(candidate.transport, true);
+        }
+
+        Transport transport = factory.connect();
+        createdCount.incrementAndGet();
+        return new Borrowed(transport, false);
+    }
+
+    /**
+     * Return a transport after use; broken transports are closed instead of pooled
+     */
+    public void release(Transport transport, boolean healthy) {
+        if (!healthy || idle.size() >= maxIdle) {
+            discard(transport);
+            return;
+        }
+        idle.offerFirst(new IdleTransport(transport, System.nanoTime()));
+    }
+
+    /**
+     * Close transports that have been idle for longer than the idle timeout
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<IdleTransport> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            IdleTransport candidate = iterator.next();
+            if (now - candidate.releasedAt > idleTimeoutNanos && idle.removeFirstOccurrence(candidate)) {
+                discard(candidate.transport);
+            }
+        }
+    }
+
+    /**
+     * Close every idle transport
+     */
+    public void close() {
+        IdleTransport candidate;
+        while ((candidate = idle.pollFirst()) != null) {
+            discard(candidate.transport);
+        }
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+
+    public long getDiscardedCount() {
+        return discardedCount.get();
+    }
+
+    private void discard(Transport transport) {
+        discardedCount.incrementAndGet();
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Failed to close SMTP transport", e);
+        }
+    }
+
+    /**
+     * A transport taken from the pool
+     */
+    public static class Borrowed {
+
+        private final Transport transport;
+        private final boolean reused;
+
+        Borrowed(Transport transport, boolean reused) {
+            this.transport = transport;
+            this.reused = reused;
+        }
+
+        public Transport getTransport() {
+            return transport;
+        }
+
+        /**
+         * Whether the connection was already used before, i.e. a failure may just mean it went stale
+         */
+        public boolean isReused() {
+            return reused;
+        }
+    }
+
+    private static class IdleTransport {
+
+        private final Transport transport;
+        private final long releasedAt;
+
+        IdleTransport(Transport transport, long releasedAt) {
+            this.transport = transport;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
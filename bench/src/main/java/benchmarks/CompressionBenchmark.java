@@ -0,0 +1,106 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU cost of gzipping a response body at different levels, as Play's GzipFilter does with
+ * {@code play.filters.gzip.compressionLevel}. The bytes on the wire for each payload and level are
+ * printed once at setup; precompressed assets cost neither, they are read as is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final String BOOTSTRAP = "public/stylesheets/bootstrap/bootstrap.min.css";
+
+    /**
+     * {@code page}: a 50 row equipment list as rendered by equipment/index, {@code bootstrap}: bootstrap.min.css
+     */
+    @Param({"page", "bootstrap"})
+    public String payload;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        body = payload.equals("bootstrap") ? readAsset(BOOTSTRAP) : equipmentPage(50);
+        System.out.printf("%n%s: %,d bytes, gzip level %d: %,d bytes%n",
+                payload, body.length, level, gzip().length);
+    }
+
+    @Benchmark
+    public byte[] gzip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAsset(String path) throws IOException {
+        try (InputStream in = CompressionBenchmark.class.getResourceAsStream("/" + path)) {
+            if (in != null) {
+                return in.readAllBytes();
+            }
+        }
+        for (Path candidate : new Path[]{Path.of(path), Path.of("..", path)}) {
+            if (Files.exists(candidate)) {
+                return Files.readAllBytes(candidate);
+            }
+        }
+        throw new UncheckedIOException(new IOException("Asset not found: " + path));
+    }
+
+    private static byte[] equipmentPage(int rows) {
+        String[] names = {"Raspberry Pi 4", "Arduino Uno", "USB-C ケーブル 1m", "温湿度センサー", "はんだごて"};
+        String[] categories = {"電子工作", "ケーブル", "センサー", "工具"};
+        StringBuilder html = new StringBuilder(64 * 1024);
+        html.append("<!DOCTYPE html><html lang=\"ja\"><head><meta charset=\"utf-8\"><title>備品管理</title>")
+                .append("<link rel=\"stylesheet\" href=\"/assets/stylesheets/bootstrap/bootstrap.min.css\"></head><body>")
+                .append("<div class=\"card\"><div class=\"card-header\"><h3>備品管理</h3></div><div class=\"card-body\">")
+                .append("<div class=\"table-responsive\"><table class=\"table table-striped\"><thead><tr>")
+                .append("<th>ID</th><th>名前</th><th>購入価格</th><th>カテゴリ</th><th>説明</th><th>操作</th></tr></thead><tbody>\n");
+        for (int i = 1; i <= rows; i++) {
+            html.append("<tr>\n    <td>").append(i).append("</td>\n    <td>").append(names[i % names.length]).append(" #").append(i)
+                    .append("</td>\n    <td>¥").append(1000 + i * 37).append("</td>\n    <td>\n        <span class=\"badge badge-info\">")
+                    .append(categories[i % categories.length]).append("</span>\n    </td>\n    <td>貸出時は受付で確認してください</td>\n    <td>\n")
+                    .append("        <a href=\"/equipment/").append(i).append("/edit\" class=\"btn btn-sm btn-outline-primary\">編集</a>\n")
+                    .append("        <form method=\"POST\" action=\"/equipment/").append(i).append("/delete\" style=\"display: inline;\">")
+                    .append("<input type=\"hidden\" name=\"csrfToken\" value=\"3f1c6a0d9e8b7c2f4a5d6e7f8091a2b3c4d5e6f7-1729200000000\">")
+                    .append("<button type=\"submit\" class=\"btn btn-sm btn-outline-danger\">削除</button></form>\n    </td>\n</tr>\n");
+        }
+        html.append("</tbody></table></div></div></div></body></html>");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import services.EmailTemplate;
+import services.EmailTemplates;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building the welcome email body with {@code String.format}, as EmailService did before,
+ * against a precompiled template, and measures rendering the full email (subject, text and HTML part).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailTemplateBenchmark {
+
+    private EmailTemplates templates;
+    private EmailTemplate textTemplate;
+    private StringBuilder buffer;
+    private String username;
+    private String email;
+
+    @Setup
+    public void setUp() {
+        templates = new EmailTemplates();
+        textTemplate = EmailTemplate.compile(
+            "こんにちは {{username}} さん,\n\n" +
+            "コワーキングスペースポータルへの会員登録が完了しました。\n\n" +
+            "ユーザー名: {{username}}\n" +
+            "メールアドレス: {{email}}\n\n" +
+            "ポータルサイトにログインして、設備の予約や管理を行うことができます。\n\n" +
+            "ご不明な点がございましたら、お気軽にお問い合わせください。\n\n" +
+            "コワーキングスペースポータル",
+            EmailTemplate.Escaping.NONE, "username", "email");
+        buffer = new StringBuilder(1024);
+        username = "yamada_taro";
+        email = "yamada@example.com";
+    }
+
+    @Benchmark
+    public String stringFormatTextOnly() {
+        return String.format(
+            "こんにちは %s さん,\n\n" +
+            "コワーキングスペースポータルへの会員登録が完了しました。\n\n" +
+            "ユーザー名: %s\n" +
+            "メールアドレス: %s\n\n" +
+            "ポータルサイトにログインして、設備の予約や管理を行うことができます。\n\n" +
+            "ご不明な点がございましたら、お気軽にお問い合わせください。\n\n" +
+            "コワーキングスペースポータル",
+            username,
+            username,
+            email
+        );
+    }
+
+    @Benchmark
+    public String compiledTemplateTextOnly() {
+        buffer.setLength(0);
+        textTemplate.render(buffer, username, email);
+        return buffer.toString();
+    }
+
+    @Benchmark
+    public EmailTemplates.Rendered compiledTemplateTextAndHtml() {
+        return templates.render(EmailTemplates.Kind.WELCOME, username, email);
+    }
+}
@@ -0,0 +1,90 @@
+package benchmarks;
+
+import models.EquipmentCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import repositoryies.EquipmentSearchIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches 100k generated equipment through the n-gram index, compared with scanning every
+ * name and description for the query the way {@code LIKE '%...%'} has to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class EquipmentSearchBenchmark {
+
+    private static final int ITEMS = 100_000;
+
+    private static final String[] PRODUCTS = {
+        "Raspberry Pi", "Arduino Uno", "ESP32 DevKit", "Jetson Nano", "micro:bit", "M5Stack",
+        "USB-C ケーブル", "HDMI ケーブル", "ジャンパーワイヤー", "はんだごて", "デジタルマルチメータ",
+        "温湿度センサー", "超音波センサー", "ACアダプタ", "モバイルバッテリー", "microSDカード", "ブレッドボード"
+    };
+    private static final String[] DETAILS = {
+        "初心者向け", "予備あり", "貸出時は受付で確認してください", "急速充電対応", "ケース付き",
+        "ピンヘッダはんだ付け済み", "3.3V/5V 両対応", "返却時に動作確認", "Wi-Fi/Bluetooth 内蔵", "長さ1m"
+    };
+
+    @Param({"raspberry pi", "センサー", "ケーブル 1m"})
+    public String query;
+
+    private EquipmentSearchIndex index;
+    private List<String> texts;
+    private String autocompletePrefix;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        EquipmentCategory[] categories = EquipmentCategory.values();
+        index = new EquipmentSearchIndex();
+        texts = new ArrayList<>(ITEMS);
+        for (int i = 1; i <= ITEMS; i++) {
+            String name = PRODUCTS[random.nextInt(PRODUCTS.length)] + " #" + i;
+            String description = DETAILS[random.nextInt(DETAILS.length)] + "、" + DETAILS[random.nextInt(DETAILS.length)];
+            index.put(i, name, description, categories[random.nextInt(categories.length)]);
+            texts.add((name + "\n" + description).toLowerCase(Locale.ROOT));
+        }
+        autocompletePrefix = query.substring(0, Math.min(4, query.length()));
+    }
+
+    @Benchmark
+    public List<EquipmentSearchIndex.Hit> ngramSearch() {
+        return index.search(query, 20);
+    }
+
+    @Benchmark
+    public List<EquipmentSearchIndex.Hit> autocomplete() {
+        return index.autocomplete(autocompletePrefix, 10);
+    }
+
+    @Benchmark
+    public int containsScan() {
+        String needle = query.toLowerCase(Locale.ROOT);
+        int matches = 0;
+        for (String text : texts) {
+            if (text.contains(needle)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,10 @@
+# Index for the upcoming/past split of a member's reservation history
+
+# --- !Ups
+
+-- upcoming reservations range-scan (user_id, reservation_date >= today); past pages seek backwards from a cursor
+create index ix_equipment_reservation_user_id_date on equipment_reservation (user_id, reservation_date);
+
+# --- !Downs
+
+drop index if exists ix_equipment_reservation_user_id_date;
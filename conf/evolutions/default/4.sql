@@ -0,0 +1,23 @@
+# Allow only one ACTIVE reservation per equipment and date
+
+# --- !Ups
+
+-- cancel duplicate ACTIVE reservations left by earlier check-then-insert races, keeping the oldest one
+update equipment_reservation set status = 'CANCELLED'
+where status = 'ACTIVE'
+  and exists (
+    select 1 from equipment_reservation earlier
+    where earlier.equipment_id = equipment_reservation.equipment_id
+      and earlier.reservation_date = equipment_reservation.reservation_date
+      and earlier.status = 'ACTIVE'
+      and earlier.id < equipment_reservation.id
+  );
+
+-- partial unique constraint: the generated column is null for non-ACTIVE rows, and nulls never collide
+alter table equipment_reservation add column active_reservation_date date generated always as (case when status = 'ACTIVE' then reservation_date end);
+create unique index uq_equipment_reservation_active_date on equipment_reservation (equipment_id, active_reservation_date);
+
+# --- !Downs
+
+drop index if exists uq_equipment_reservation_active_date;
+alter table equipment_reservation drop column if exists active_reservation_date;
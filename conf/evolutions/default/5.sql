@@ -0,0 +1,32 @@
+# Add transactional email outbox
+
+# --- !Ups
+
+create table email_outbox (
+  id                            bigint generated by default as identity not null,
+  created_at                    timestamp default current_timestamp not null,
+  updated_at                    timestamp default current_timestamp not null,
+  recipient                     varchar(255) not null,
+  subject                       varchar(255) not null,
+  body                          clob not null,
+  status                        varchar(10) default 'PENDING' not null,
+  attempts                      integer default 0 not null,
+  next_attempt_at               timestamp not null,
+  lease_owner                   varchar(64),
+  lease_until                   timestamp,
+  sent_at                       timestamp,
+  last_error                    varchar(1000),
+  constraint ck_email_outbox_status check ( status in ('PENDING','SENT','FAILED')),
+  constraint pk_email_outbox primary key (id)
+);
+
+-- the dispatcher only looks at due PENDING rows
+create index ix_email_outbox_status_next_attempt_at on email_outbox (status, next_attempt_at);
+create index ix_email_outbox_lease_owner on email_outbox (lease_owner);
+
+# --- !Downs
+
+drop index if exists ix_email_outbox_status_next_attempt_at;
+drop index if exists ix_email_outbox_lease_owner;
+
+drop table if exists email_outbox;
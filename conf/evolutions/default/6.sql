@@ -0,0 +1,9 @@
+# Add HTML part to outbox emails
+
+# --- !Ups
+
+alter table email_outbox add column html_body clob;
+
+# --- !Downs
+
+alter table email_outbox drop column if exists html_body;
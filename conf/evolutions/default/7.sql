@@ -0,0 +1,25 @@
+# Store password reset tokens as SHA-256 hashes
+
+# --- !Ups
+
+alter table password_reset_token add column token_hash varchar(64);
+update password_reset_token set token_hash = lower(rawtohex(hash('SHA-256', stringtoutf8(token))));
+alter table password_reset_token alter column token_hash set not null;
+
+drop index if exists ix_password_reset_token_token;
+alter table password_reset_token drop column token;
+
+-- lookups go by hash only; a unique index also makes a (practically impossible) collision fail loudly
+create unique index uq_password_reset_token_token_hash on password_reset_token (token_hash);
+
+# --- !Downs
+
+-- the raw tokens cannot be recovered, so links sent before the downgrade stop working
+alter table password_reset_token add column token varchar(255);
+update password_reset_token set token = token_hash;
+alter table password_reset_token alter column token set not null;
+
+drop index if exists uq_password_reset_token_token_hash;
+alter table password_reset_token drop column token_hash;
+
+create index ix_password_reset_token_token on password_reset_token (token);
@@ -0,0 +1,15 @@
+# Indexes for the paginated user management listing
+
+# --- !Ups
+
+-- keyset pagination seeks on (username, id); with a role filter on (role, username, id)
+create index ix_app_user_username_id on app_user (username, id);
+create index ix_app_user_role_username_id on app_user (role, username, id);
+-- email prefix search, also used by the email lookups of login and password reset
+create index ix_app_user_email on app_user (email);
+
+# --- !Downs
+
+drop index if exists ix_app_user_username_id;
+drop index if exists ix_app_user_role_username_id;
+drop index if exists ix_app_user_email;
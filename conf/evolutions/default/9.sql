@@ -0,0 +1,12 @@
+# Indexes for the paginated equipment catalog and picker
+
+# --- !Ups
+
+-- keyset pagination and name prefix search seek on (name, id); with a category filter on (category, name, id)
+create index ix_equipment_name_id on equipment (name, id);
+create index ix_equipment_category_name_id on equipment (category, name, id);
+
+# --- !Downs
+
+drop index if exists ix_equipment_name_id;
+drop index if exists ix_equipment_category_name_id;
@@ -0,0 +1,199 @@
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import scala.collection.mutable
+
+/**
+ * Build-time purge of unused CSS rules.
+ *
+ * Class names are collected the way PurgeCSS does: every word in the templates and scripts counts as used,
+ * so a class only needs to appear somewhere literally. A word ending in `-` (as in `badge-@if(...)`) keeps
+ * every class starting with it. A rule is kept when at least one of its selectors uses only such classes;
+ * rules without classes (reboot, element styles) are always kept.
+ */
+object CssPurge {
+
+  private val Word = "[A-Za-z0-9_-]+".r
+  private val ClassName = """\.(-?[_a-zA-Z][_a-zA-Z0-9-]*)""".r
+
+  /** Words used in the given files */
+  def words(files: Seq[File]): Set[String] =
+    files.flatMap(file => Word.findAllIn(read(file))).toSet
+
+  /** Predicate over class names for the given words */
+  def usedBy(words: Set[String]): String => Boolean = {
+    val prefixes = words.filter(_.endsWith("-")).toSeq
+    name => words.contains(name) || prefixes.exists(name.startsWith)
+  }
+
+  /** The stylesheet without the rules none of whose selectors are used; a leading license comment is kept */
+  def purge(css: String, used: String => Boolean): String = {
+    val out = new java.lang.StringBuilder(css.length / 4)
+    val start = if (css.startsWith("/*!")) {
+      val end = css.indexOf("*/") + 2
+      out.append(css, 0, end).append('\n')
+      end
+    } else 0
+    appendBlock(css, start, css.length, used, out)
+    out.toString
+  }
+
+  /** Writes `content` unless the file already has it, so unchanged output does not trigger recompilation */
+  def write(file: File, content: String): File = {
+    val bytes = content.getBytes(StandardCharsets.UTF_8)
+    if (!file.exists() || !java.util.Arrays.equals(Files.readAllBytes(file.toPath), bytes)) {
+      file.getParentFile.mkdirs()
+      Files.write(file.toPath, bytes)
+    }
+    file
+  }
+
+  /** A Java class holding `css` as a string constant, for templates to inline */
+  def javaConstant(packageName: String, className: String, css: String): String = {
+    require(css.getBytes(StandardCharsets.UTF_8).length < 60000, s"$className is too large to inline: ${css.length} characters")
+    val literal = css.flatMap {
+      case '"' => "\\\""
+      case '\\' => "\\\\"
+      case '\n' => "\\n"
+      case c => c.toString
+    }
+    s"""package $packageName;
+       |
+       |/**
+       | * Generated by CssPurge at build time; do not edit.
+       | */
+       |public final class $className {
+       |
+       |    public static final String CSS = "$literal";
+       |
+       |    private $className() {
+       |    }
+       |}
+       |""".stripMargin
+  }
+
+  private def read(file: File): String = new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8)
+
+  private def appendBlock(css: String, from: Int, to: Int, used: String => Boolean, out: java.lang.StringBuilder): Unit = {
+    var i = skipSpaceAndComments(css, from, to)
+    while (i < to) {
+      val open = scan(css, i, to, "{;")
+      if (open >= to || css.charAt(open) == ';') {
+        // A statement such as @charset or @import
+        val end = math.min(open + 1, to)
+        out.append(css, i, end)
+        i = end
+      } else {
+        val prelude = css.substring(i, open).trim
+        val close = matchingBrace(css, open, to)
+        if (prelude.startsWith("@media") || prelude.startsWith("@supports")) {
+          val inner = new java.lang.StringBuilder
+          appendBlock(css, open + 1, close, used, inner)
+          if (inner.length > 0) {
+            out.append(prelude).append('{').append(inner).append('}')
+          }
+        } else if (prelude.startsWith("@")) {
+          // @font-face, @keyframes, @page: kept as they are
+          out.append(css, i, close + 1)
+        } else {
+          val selectors = splitSelectors(prelude).filter(selector => classes(selector).forall(used))
+          if (selectors.nonEmpty) {
+            out.append(selectors.mkString(",")).append(css, open, close + 1)
+          }
+        }
+        i = close + 1
+      }
+      i = skipSpaceAndComments(css, i, to)
+    }
+  }
+
+  private def classes(selector: String): Iterator[String] = {
+    // Attribute values may contain dots ([href^="http://"]), so only look outside of brackets.
+    // Classes inside :not() need not be present (.btn:not(.disabled)), so they do not count either.
+    val outside = selector.replaceAll("""\[[^\]]*\]""", "").replaceAll(""":not\([^)]*\)""", "")
+    ClassName.findAllMatchIn(outside).map(_.group(1))
+  }
+
+  private def splitSelectors(prelude: String): Seq[String] = {
+    val selectors = mutable.ArrayBuffer.empty[String]
+    var depth = 0
+    var start = 0
+    for (i <- prelude.indices) {
+      prelude.charAt(i) match {
+        case '(' | '[' => depth += 1
+        case ')' | ']' => depth -= 1
+        case ',' if depth == 0 =>
+          selectors += prelude.substring(start, i).trim
+          start = i + 1
+        case _ =>
+      }
+    }
+    selectors += prelude.substring(start).trim
+    selectors.toSeq
+  }
+
+  /** Index of the first of `stops` outside strings and comments, or `to` */
+  private def scan(css: String, from: Int, to: Int, stops: String): Int = {
+    var i = from
+    while (i < to) {
+      val c = css.charAt(i)
+      if (c == '"' || c == '\'') {
+        i = skipString(css, i, to)
+      } else if (c == '/' && i + 1 < to && css.charAt(i + 1) == '*') {
+        i = skipComment(css, i, to)
+      } else if (stops.indexOf(c) >= 0) {
+        return i
+      } else {
+        i += 1
+      }
+    }
+    to
+  }
+
+  private def matchingBrace(css: String, open: Int, to: Int): Int = {
+    var depth = 0
+    var i = open
+    while (i < to) {
+      i = scan(css, i, to, "{}")
+      if (i < to) {
+        depth += (if (css.charAt(i) == '{') 1 else -1)
+        if (depth == 0) {
+          return i
+        }
+        i += 1
+      }
+    }
+    throw new IllegalArgumentException(s"Unbalanced braces at offset $open")
+  }
+
+  private def skipString(css: String, quote: Int, to: Int): Int = {
+    var i = quote + 1
+    while (i < to && css.charAt(i) != css.charAt(quote)) {
+      i += (if (css.charAt(i) == '\\') 2 else 1)
+    }
+    i + 1
+  }
+
+  private def skipComment(css: String, from: Int, to: Int): Int = {
+    val end = css.indexOf("*/", from + 2)
+    if (end < 0 || end >= to) to else end + 2
+  }
+
+  private def skipSpaceAndComments(css: String, from: Int, to: Int): Int = {
+    var i = from
+    var moved = true
+    while (moved && i < to) {
+      moved = false
+      while (i < to && Character.isWhitespace(css.charAt(i))) {
+        i += 1
+        moved = true
+      }
+      if (i + 1 < to && css.charAt(i) == '/' && css.charAt(i + 1) == '*') {
+        i = skipComment(css, i, to)
+        moved = true
+      }
+    }
+    i
+  }
+}
@@ -0,0 +1,89 @@
+import org.junit.Assert._
+import org.junit.Test
+
+class CssPurgeTest {
+
+  private val used = CssPurge.usedBy(Set("btn", "row", "badge-"))
+
+  private def purge(css: String): String = CssPurge.purge(css, used)
+
+  @Test
+  def testUnusedRulesAreRemovedAndRulesWithoutClassesKept(): Unit = {
+    assertEquals("body{margin:0}.btn{color:red}", purge("body{margin:0}.btn{color:red}.card{color:blue}"))
+  }
+
+  @Test
+  def testOnlyUsedSelectorsOfAListAreKept(): Unit = {
+    assertEquals(".btn,.row>.btn{x:1}", purge(".card,.btn,.row>.btn,.row .card{x:1}"))
+  }
+
+  @Test
+  def testLicenseCommentIsKept(): Unit = {
+    assertEquals("/*! Bootstrap */\n.btn{a:1}", purge("/*! Bootstrap */.btn{a:1}.card{b:2}"))
+  }
+
+  @Test
+  def testMediaBlocksArePurgedAndDroppedWhenEmpty(): Unit = {
+    assertEquals("@media (min-width:576px){.btn{b:2}}",
+      purge("@media (min-width:576px){.card{a:1}.btn{b:2}}@media print{.card{c:3}}"))
+  }
+
+  @Test
+  def testNestedConditionalBlocks(): Unit = {
+    assertEquals("@media screen{@supports (display:grid){.row{a:1}}}",
+      purge("@media screen{@supports (display:grid){.row{a:1}.card{b:1}}.card{c:1}}"))
+    assertEquals("@media screen{.row{b:1}}", purge("@media screen{@supports (display:grid){.card{a:1}}.row{b:1}}"))
+  }
+
+  @Test
+  def testOtherAtRulesAndStatementsAreKept(): Unit = {
+    val css = "@charset \"UTF-8\";@font-face{font-family:x}@keyframes spin{from{a:1}to{b:2}}"
+    assertEquals(css, purge(css + ".card{a:1}"))
+  }
+
+  @Test
+  def testDotsInAttributeSelectorsAreNotClasses(): Unit = {
+    assertEquals("a[href^=\"http://example.card\"]{a:1}", purge("a[href^=\"http://example.card\"]{a:1}.card[data-x]{b:1}"))
+    assertEquals(".btn[type=button]{a:1}", purge(".btn[type=button]{a:1}"))
+  }
+
+  @Test
+  def testBracesAndCommasInStringsAndComments(): Unit = {
+    assertEquals(".btn::after{content:\"}{.card,\"}", purge(".btn::after{content:\"}{.card,\"}.card{a:1}"))
+    assertEquals(".btn{content:'\\'}'}", purge(".btn{content:'\\'}'}.card{a:1}"))
+    assertEquals(".btn{a:1}", purge("/* .card { */.btn{a:1}/* } */.card{b:2}"))
+  }
+
+  @Test
+  def testPrefixWordsKeepEveryClassStartingWithThem(): Unit = {
+    // "badge-" comes from a template like class="badge-@status", so any badge-* may be rendered
+    assertEquals(".badge-primary{a:1}.badge-danger{b:1}", purge(".badge-primary{a:1}.badge-danger{b:1}.badge{c:1}.badgex{d:1}"))
+  }
+
+  @Test
+  def testClassesInsideNotAreNotRequired(): Unit = {
+    assertEquals(".btn:not(:disabled):not(.disabled){cursor:pointer}",
+      purge(".btn:not(:disabled):not(.disabled){cursor:pointer}.card:not(.btn){a:1}"))
+  }
+
+  @Test
+  def testWordsAreCollectedFromTemplateSyntax(): Unit = {
+    val file = java.io.File.createTempFile("view", ".scala.html")
+    try {
+      CssPurge.write(file, "<span class=\"badge badge-@reservation.status\">@if(x) {<div class='row'>}</span>")
+      val words = CssPurge.words(Seq(file))
+      assertTrue(words.contains("badge-"))
+      assertTrue(words.contains("row"))
+      assertTrue(CssPurge.usedBy(words)("badge-ACTIVE"))
+      assertFalse(CssPurge.usedBy(words)("card"))
+    } finally {
+      file.delete()
+    }
+  }
+
+  @Test
+  def testJavaConstantEscapesTheStylesheet(): Unit = {
+    val java = CssPurge.javaConstant("views", "CriticalCss", ".a::after{content:\"\\\\\"}\n")
+    assertTrue(java.contains("public static final String CSS = \".a::after{content:\\\"\\\\\\\\\\\"}\\n\";"))
+  }
+}
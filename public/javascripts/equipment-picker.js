@@ -0,0 +1,83 @@
+// Search-as-you-type equipment picker for the reservation form.
+// Suggestions are fetched by name prefix after a short pause in typing; choosing one fills the
+// hidden equipmentId field.
+(function () {
+    var input = document.getElementById('equipmentName');
+    var category = document.getElementById('equipmentCategory');
+    var hiddenId = document.getElementById('equipmentId');
+    var datalist = document.getElementById('equipmentOptions');
+    if (!input || !hiddenId || !datalist) {
+        return;
+    }
+
+    var DEBOUNCE_MS = 250;
+    var timer = null;
+    var latestRequest = 0;
+
+    function label(option) {
+        return option.name + ' (' + option.categoryName + ')';
+    }
+
+    function selectMatching() {
+        var options = datalist.options;
+        for (var i = 0; i < options.length; i++) {
+            if (options[i].value === input.value) {
+                hiddenId.value = options[i].getAttribute('data-id');
+                return true;
+            }
+        }
+        hiddenId.value = '';
+        return false;
+    }
+
+    function load() {
+        var requestId = ++latestRequest;
+        var url = input.getAttribute('data-url')
+            + '?q=' + encodeURIComponent(input.value.trim())
+            + '&category=' + encodeURIComponent(category ? category.value : '');
+        fetch(url, {credentials: 'same-origin', headers: {'Accept': 'application/json'}})
+            .then(function (response) {
+                return response.ok ? response.json() : [];
+            })
+            .then(function (equipmentList) {
+                // Ignore responses that arrive after a newer request was sent
+                if (requestId !== latestRequest) {
+                    return;
+                }
+                datalist.innerHTML = '';
+                equipmentList.forEach(function (equipment) {
+                    var option = document.createElement('option');
+                    option.value = label(equipment);
+                    option.setAttribute('data-id', equipment.id);
+                    datalist.appendChild(option);
+                });
+                selectMatching();
+            })
+            .catch(function () {
+                // Keep the previous suggestions
+            });
+    }
+
+    function schedule() {
+        clearTimeout(timer);
+        timer = setTimeout(load, DEBOUNCE_MS);
+    }
+
+    input.addEventListener('input', function () {
+        if (!selectMatching()) {
+            schedule();
+        }
+    });
+    input.addEventListener('focus', function () {
+        if (datalist.options.length === 0) {
+            load();
+        }
+    });
+    if (category) {
+        category.addEventListener('change', function () {
+            hiddenId.value = '';
+            input.value = '';
+            load();
+        });
+    }
+})();
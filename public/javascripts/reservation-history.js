@@ -0,0 +1,61 @@
+// Loads the member's past reservations one page at a time when asked for, instead of rendering
+// the whole history with every visit to the reservation page.
+(function () {
+    var button = document.getElementById('loadPastReservations');
+    var table = document.getElementById('pastReservations');
+    var empty = document.getElementById('pastReservationsEmpty');
+    if (!button || !table) {
+        return;
+    }
+
+    var tbody = table.querySelector('tbody');
+    var next = '';
+
+    function cell(row, text) {
+        var td = document.createElement('td');
+        td.textContent = text;
+        row.appendChild(td);
+        return td;
+    }
+
+    function appendRow(reservation) {
+        var row = document.createElement('tr');
+        cell(row, reservation.equipmentName);
+        cell(row, reservation.reservationDate);
+        var badge = document.createElement('span');
+        badge.className = reservation.status === 'ACTIVE' ? 'badge badge-success' : 'badge badge-secondary';
+        badge.textContent = reservation.statusName;
+        cell(row, '').appendChild(badge);
+        tbody.appendChild(row);
+    }
+
+    button.addEventListener('click', function () {
+        button.disabled = true;
+        var url = button.getAttribute('data-url') + (next ? '?after=' + encodeURIComponent(next) : '');
+        fetch(url, {credentials: 'same-origin', headers: {'Accept': 'application/json'}})
+            .then(function (response) {
+                if (!response.ok) {
+                    throw new Error(response.status);
+                }
+                return response.json();
+            })
+            .then(function (page) {
+                page.reservations.forEach(appendRow);
+                if (tbody.children.length > 0) {
+                    table.classList.remove('d-none');
+                } else if (empty) {
+                    empty.classList.remove('d-none');
+                }
+                next = page.next || '';
+                if (next) {
+                    button.textContent = 'さらに表示';
+                    button.disabled = false;
+                } else {
+                    button.classList.add('d-none');
+                }
+            })
+            .catch(function () {
+                button.disabled = false;
+            });
+    });
+})();
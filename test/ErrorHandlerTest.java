@@ -5,7 +5,9 @@ import play.mvc.Http;
 import static org.junit.Assert.*;
 import static play.mvc.Http.Status.*;
 
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -51,4 +53,20 @@ public class ErrorHandlerTest {
         // Test that we get a result with error status
         assertNotNull(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRejectedExecutionIsServiceUnavailable() throws Exception {
+        Http.RequestHeader mockRequest = new Http.RequestBuilder()
+            .uri("/login")
+            .method("POST")
+            .build();
+
+        Throwable exception = new CompletionException(new RejectedExecutionException("crypto executor saturated"));
+
+        CompletionStage<Result> resultStage = errorHandler.onServerError(mockRequest, exception);
+        Result result = resultStage.toCompletableFuture().get(1, TimeUnit.SECONDS);
+
+        assertEquals(SERVICE_UNAVAILABLE, result.status());
+        assertEquals("1", result.header("Retry-After").orElse(null));
+    }
+}
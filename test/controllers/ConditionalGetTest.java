@@ -0,0 +1,69 @@
+package controllers;
+
+import org.junit.Test;
+import play.mvc.Http;
+import play.mvc.Result;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for ConditionalGet
+ */
+public class ConditionalGetTest {
+
+    private static Http.Request request(String ifNoneMatch) {
+        Http.RequestBuilder builder = new Http.RequestBuilder().uri("/equipment").session("csrfToken", "token");
+        if (ifNoneMatch != null) {
+            builder.header(Http.HeaderNames.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testETagChangesWithEveryPart() {
+        Optional<String> etag = ConditionalGet.etag(request(null), 1L, 42L, "STAFF");
+
+        assertTrue(etag.get().matches("W/\"[0-9a-f]{32}\""));
+        assertEquals(etag, ConditionalGet.etag(request(null), 1L, 42L, "STAFF"));
+        assertNotEquals(etag, ConditionalGet.etag(request(null), 2L, 42L, "STAFF"));
+        assertNotEquals(etag, ConditionalGet.etag(request(null), 1L, 43L, "STAFF"));
+        assertNotEquals(etag, ConditionalGet.etag(new Http.RequestBuilder().uri("/equipment?category=TOOLS")
+                .session("csrfToken", "token").build(), 1L, 42L, "STAFF"));
+        assertNotEquals(etag, ConditionalGet.etag(new Http.RequestBuilder().uri("/equipment")
+                .session("csrfToken", "other").build(), 1L, 42L, "STAFF"));
+    }
+
+    @Test
+    public void testNoETagWhileAFlashMessageIsShown() {
+        Http.Request request = new Http.RequestBuilder().uri("/equipment").flash(Map.of("success", "saved")).build();
+
+        assertFalse(ConditionalGet.etag(request, 1L).isPresent());
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        Optional<String> etag = ConditionalGet.etag(request(null), 1L);
+        String strong = etag.get().substring(2);
+
+        assertFalse(ConditionalGet.isNotModified(request(null), etag));
+        assertTrue(ConditionalGet.isNotModified(request(etag.get()), etag));
+        assertTrue(ConditionalGet.isNotModified(request("\"other\", " + strong), etag));
+        assertTrue(ConditionalGet.isNotModified(request("*"), etag));
+        assertFalse(ConditionalGet.isNotModified(request("W/\"other\""), etag));
+        assertFalse(ConditionalGet.isNotModified(request(etag.get()), Optional.empty()));
+    }
+
+    @Test
+    public void testNotModifiedCarriesETagAndPrivateCacheControl() {
+        Optional<String> etag = Optional.of("W/\"abc\"");
+
+        Result result = ConditionalGet.notModified(etag);
+
+        assertEquals(Http.Status.NOT_MODIFIED, result.status());
+        assertEquals(Optional.of("W/\"abc\""), result.header(Http.HeaderNames.ETAG));
+        assertEquals(Optional.of("private, no-cache"), result.header(Http.HeaderNames.CACHE_CONTROL));
+    }
+}
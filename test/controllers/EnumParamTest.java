@@ -0,0 +1,28 @@
+package controllers;
+
+import models.EquipmentCategory;
+import models.UserRole;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for EnumParam
+ */
+public class EnumParamTest {
+
+    @Test
+    public void testKnownNames() {
+        assertEquals(Optional.of(EquipmentCategory.TOOLS), EnumParam.parse(EquipmentCategory.class, "TOOLS"));
+        assertEquals(Optional.of(UserRole.STAFF), EnumParam.parse(UserRole.class, "STAFF"));
+    }
+
+    @Test
+    public void testUnknownEmptyAndNullNamesAreNoFilter() {
+        assertFalse(EnumParam.parse(EquipmentCategory.class, "tools").isPresent());
+        assertFalse(EnumParam.parse(EquipmentCategory.class, "").isPresent());
+        assertFalse(EnumParam.parse(UserRole.class, null).isPresent());
+    }
+}
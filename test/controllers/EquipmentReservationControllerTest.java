@@ -0,0 +1,116 @@
+package controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import models.Equipment;
+import models.EquipmentCategory;
+import models.EquipmentReservation;
+import models.User;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.WithApplication;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static play.inject.Bindings.bind;
+import static play.test.Helpers.GET;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+/**
+ * Tests for the date dependent parts of EquipmentReservationController, driven by an injected clock
+ */
+public class EquipmentReservationControllerTest extends WithApplication {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final MovableClock clock = new MovableClock();
+    private User user;
+
+    @Override
+    protected Application provideApplication() {
+        return new GuiceApplicationBuilder()
+                .overrides(bind(Clock.class).toInstance(clock))
+                .build();
+    }
+
+    @Before
+    public void createUser() {
+        user = new User("member", "member@example.com", "password123");
+        user.save();
+    }
+
+    private Result get(String uri) {
+        return route(app, new Http.RequestBuilder().method(GET).uri(uri).session("userId", user.getId().toString()));
+    }
+
+    private static Instant noonOn(LocalDate date) {
+        return date.atTime(12, 0).atZone(ZONE).toInstant();
+    }
+
+    @Test
+    public void testETagChangesWithTheDay() {
+        clock.instant = noonOn(LocalDate.of(2030, 1, 10));
+        Result today = get("/reservations");
+        clock.instant = noonOn(LocalDate.of(2030, 1, 10)).plusSeconds(3600);
+        Result laterToday = get("/reservations");
+        clock.instant = noonOn(LocalDate.of(2030, 1, 11));
+        Result tomorrow = get("/reservations");
+
+        assertEquals(Http.Status.OK, today.status());
+        Optional<String> etag = today.header(Http.HeaderNames.ETAG);
+        assertTrue(etag.isPresent());
+        assertEquals(etag, laterToday.header(Http.HeaderNames.ETAG));
+        assertNotEquals(etag, tomorrow.header(Http.HeaderNames.ETAG));
+    }
+
+    @Test
+    public void testReservationBecomesPastTheDayAfter() {
+        Equipment equipment = new Equipment("Raspberry Pi 5", new BigDecimal("12000"), "8GB", EquipmentCategory.SINGLE_BOARD_COMPUTER);
+        equipment.save();
+        LocalDate date = LocalDate.of(2030, 1, 10);
+        new EquipmentReservation(equipment, user, date).save();
+
+        clock.instant = noonOn(date);
+        JsonNode sameDay = Json.parse(contentAsString(get("/reservations/past.json")));
+        clock.instant = noonOn(date.plusDays(1));
+        JsonNode nextDay = Json.parse(contentAsString(get("/reservations/past.json")));
+
+        assertEquals(0, sameDay.get("reservations").size());
+        assertEquals(1, nextDay.get("reservations").size());
+        assertEquals(date.toString(), nextDay.get("reservations").get(0).get("reservationDate").asText());
+    }
+
+    /**
+     * Clock whose instant the test sets
+     */
+    private static class MovableClock extends Clock {
+
+        private volatile Instant instant = Instant.now();
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return Clock.fixed(instant, zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
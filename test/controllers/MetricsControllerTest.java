@@ -0,0 +1,53 @@
+package controllers;
+
+import org.junit.Test;
+import play.mvc.Http;
+import play.mvc.Result;
+import services.JvmMetrics;
+import services.RequestMetrics;
+
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static play.test.Helpers.contentAsString;
+
+/**
+ * Tests for MetricsController
+ */
+public class MetricsControllerTest {
+
+    private static Http.Request request(String remoteAddress, String authorization) {
+        Http.RequestBuilder builder = new Http.RequestBuilder().uri("/metrics").remoteAddress(remoteAddress);
+        if (authorization != null) {
+            builder.header(Http.HeaderNames.AUTHORIZATION, authorization);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testLocalScrapeWithoutToken() {
+        RequestMetrics requestMetrics = new RequestMetrics();
+        requestMetrics.route(null).record(404, 1_000_000);
+        MetricsController controller = new MetricsController(requestMetrics, new JvmMetrics(), null);
+
+        Result result = controller.metrics(request("127.0.0.1", null));
+
+        assertEquals(Http.Status.OK, result.status());
+        assertEquals(Optional.of("text/plain"), result.contentType());
+        String body = contentAsString(result);
+        assertTrue(body.contains("http_server_requests_seconds_count{route=\"unmatched\",status=\"4xx\"} 1\n"));
+        assertTrue(body.contains("jvm_memory_used_bytes{area=\"heap\"} "));
+        assertTrue(body.contains("jvm_gc_collection_seconds_count{gc=\""));
+        assertTrue(body.contains("jvm_threads_current "));
+        assertEquals(Http.Status.FORBIDDEN, controller.metrics(request("203.0.113.1", null)).status());
+    }
+
+    @Test
+    public void testTokenIsRequiredWhenConfigured() {
+        MetricsController controller = new MetricsController(new RequestMetrics(), new JvmMetrics(), "secret");
+
+        assertEquals(Http.Status.OK, controller.metrics(request("203.0.113.1", "Bearer secret")).status());
+        assertEquals(Http.Status.FORBIDDEN, controller.metrics(request("203.0.113.1", "Bearer wrong")).status());
+        assertEquals(Http.Status.FORBIDDEN, controller.metrics(request("127.0.0.1", null)).status());
+    }
+}
@@ -0,0 +1,74 @@
+package filters;
+
+import org.apache.pekko.stream.Materializer;
+import org.junit.Test;
+import play.api.Configuration;
+import play.filters.gzip.GzipFilterConfig;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.WithApplication;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+import static play.test.Helpers.GET;
+import static play.test.Helpers.contentAsBytes;
+import static play.test.Helpers.route;
+
+/**
+ * Tests for the gzip filter as configured in application.conf
+ */
+public class CompressionFilterTest extends WithApplication {
+
+    private Result get(String uri, String acceptEncoding) {
+        Http.RequestBuilder request = new Http.RequestBuilder().method(GET).uri(uri);
+        if (acceptEncoding != null) {
+            request.header(Http.HeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return route(app, request);
+    }
+
+    private String gunzip(Result result) throws IOException {
+        byte[] body = contentAsBytes(result, app.injector().instanceOf(Materializer.class)).toArray();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void testConfiguration() {
+        GzipFilterConfig config = GzipFilterConfig.fromConfiguration(new Configuration(app.config()));
+
+        assertEquals(1400, config.threshold());
+        assertEquals(6, config.compressionLevel());
+    }
+
+    @Test
+    public void testHtmlPageIsGzipped() throws IOException {
+        Result result = get("/login", "gzip, deflate, br");
+
+        assertEquals(Http.Status.OK, result.status());
+        assertEquals(Optional.of("gzip"), result.header(Http.HeaderNames.CONTENT_ENCODING));
+        assertTrue(result.header(Http.HeaderNames.VARY).orElse("").contains(Http.HeaderNames.ACCEPT_ENCODING));
+        assertTrue(gunzip(result).contains("<html"));
+    }
+
+    @Test
+    public void testClientsWithoutGzipGetIdentity() {
+        assertFalse(get("/login", null).header(Http.HeaderNames.CONTENT_ENCODING).isPresent());
+        assertFalse(get("/login", "gzip;q=0").header(Http.HeaderNames.CONTENT_ENCODING).isPresent());
+    }
+
+    @Test
+    public void testOtherContentTypesAreNotCompressed() {
+        Result result = get("/count", "gzip");
+
+        assertEquals(Optional.of("text/plain"), result.contentType());
+        assertFalse(result.header(Http.HeaderNames.CONTENT_ENCODING).isPresent());
+    }
+}
@@ -0,0 +1,82 @@
+package filters;
+
+import com.typesafe.config.ConfigFactory;
+import org.apache.pekko.actor.ActorSystem;
+import org.apache.pekko.stream.Materializer;
+import org.junit.Test;
+import play.libs.streams.Accumulator;
+import play.mvc.EssentialAction;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.mvc.Results;
+import play.test.WithApplication;
+
+import static org.junit.Assert.*;
+import static play.test.Helpers.POST;
+import static play.test.Helpers.route;
+
+public class RateLimitFilterTest extends WithApplication {
+
+    private Http.RequestBuilder login(String ip) {
+        return new Http.RequestBuilder()
+                .method(POST)
+                .uri("/login")
+                .remoteAddress(ip);
+    }
+
+    private Result postLogin(String ip) {
+        return route(app, login(ip));
+    }
+
+    @Test
+    public void testLoginIsLimitedPerClientIp() {
+        for (int i = 0; i < 10; i++) {
+            assertNotEquals(Http.Status.TOO_MANY_REQUESTS, postLogin("203.0.113.1").status());
+        }
+
+        Result limited = postLogin("203.0.113.1");
+        assertEquals(Http.Status.TOO_MANY_REQUESTS, limited.status());
+        assertTrue(limited.header(Http.HeaderNames.RETRY_AFTER).isPresent());
+
+        // Another client still has its own budget
+        assertNotEquals(Http.Status.TOO_MANY_REQUESTS, postLogin("203.0.113.2").status());
+    }
+
+    @Test
+    public void testForwardedForFromTheClientDoesNotResetTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            route(app, login("203.0.113.3").header("X-Forwarded-For", "198.51.100." + i));
+        }
+
+        Result limited = route(app, login("203.0.113.3").header("X-Forwarded-For", "198.51.100.99"));
+        assertEquals(Http.Status.TOO_MANY_REQUESTS, limited.status());
+    }
+
+    @Test
+    public void testNewClientsAreNotTrackedOnceTheBucketCountIsCapped() {
+        RateLimitFilter filter = new RateLimitFilter(ConfigFactory.parseString(
+                "rateLimit { evictionInterval = 1 hour, maxBuckets = 2, "
+                        + "rules = [{ method = POST, path = \"/login\", capacity = 10, refillPeriod = 1 minute }] }"),
+                app.injector().instanceOf(ActorSystem.class));
+        EssentialAction action = filter.apply(EssentialAction.of(request -> Accumulator.done(Results.ok())));
+        Materializer materializer = app.injector().instanceOf(Materializer.class);
+
+        for (int i = 1; i <= 2; i++) {
+            Result result = action.apply(login("192.0.2." + i).build()).run(materializer).toCompletableFuture().join();
+            assertEquals(Http.Status.OK, result.status());
+        }
+        // The map is full: a new client is served without getting a bucket, however often it comes
+        for (int i = 0; i < 20; i++) {
+            Result untracked = action.apply(login("192.0.2.3").build()).run(materializer).toCompletableFuture().join();
+            assertEquals(Http.Status.OK, untracked.status());
+        }
+        assertEquals(2, filter.getBucketCount());
+
+        // Clients that already have a bucket are still limited
+        for (int i = 0; i < 9; i++) {
+            action.apply(login("192.0.2.1").build()).run(materializer).toCompletableFuture().join();
+        }
+        Result limited = action.apply(login("192.0.2.1").build()).run(materializer).toCompletableFuture().join();
+        assertEquals(Http.Status.TOO_MANY_REQUESTS, limited.status());
+    }
+}
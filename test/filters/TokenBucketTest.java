@@ -0,0 +1,37 @@
+package filters;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRefill() {
+        TokenBucket bucket = new TokenBucket(3, SECOND, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND, bucket.tryAcquire(0));
+
+        // One token comes back per emission interval
+        assertEquals(0, bucket.tryAcquire(SECOND));
+        assertTrue(bucket.tryAcquire(SECOND) > 0);
+    }
+
+    @Test
+    public void testBucketIsIdleOnceRefilled() {
+        TokenBucket bucket = new TokenBucket(2, SECOND, 0);
+
+        assertTrue(bucket.isIdle(0));
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+        assertFalse(bucket.isIdle(SECOND));
+        assertTrue(bucket.isIdle(2 * SECOND));
+    }
+}
@@ -0,0 +1,30 @@
+package models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PasswordResetTokenTest {
+
+    @Test
+    public void testOnlyTheHashOfTheTokenIsPersisted() {
+        PasswordResetToken token = new PasswordResetToken(new User("alice", "alice@example.com", UserRole.CUSTOMER));
+
+        assertNotNull(token.getToken());
+        assertEquals(64, token.getTokenHash().length());
+        assertNotEquals(token.getToken(), token.getTokenHash());
+        assertEquals(PasswordResetToken.hash(token.getToken()), token.getTokenHash());
+    }
+
+    @Test
+    public void testHashIsHexEncodedSha256() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", PasswordResetToken.hash("abc"));
+    }
+
+    @Test
+    public void testTokensAreUnique() {
+        User user = new User("alice", "alice@example.com", UserRole.CUSTOMER);
+
+        assertNotEquals(new PasswordResetToken(user).getToken(), new PasswordResetToken(user).getToken());
+    }
+}
@@ -0,0 +1,51 @@
+package models;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReservationCalendarTest {
+
+    private Equipment equipment(long id, String name) {
+        Equipment equipment = new Equipment(name, BigDecimal.ONE, null, EquipmentCategory.SENSORS);
+        equipment.setId(id);
+        return equipment;
+    }
+
+    @Test
+    public void testMarkReservedWithinWeek() {
+        LocalDate monday = LocalDate.of(2025, 3, 3);
+        ReservationCalendar calendar = new ReservationCalendar(monday, List.of(equipment(10L, "A"), equipment(20L, "B")));
+
+        calendar.markReserved(0, monday);
+        calendar.markReserved(1, monday.plusDays(6));
+        calendar.markReserved(1, monday);
+
+        assertTrue(calendar.isReserved(0, 0));
+        assertFalse(calendar.isReserved(0, 6));
+        assertTrue(calendar.isReserved(1, 6));
+        assertEquals(2, calendar.getReservedCount(0));
+        assertEquals(0, calendar.getReservedCount(3));
+        assertEquals(20L, calendar.getEquipmentId(1));
+        assertEquals("B", calendar.getEquipmentName(1));
+    }
+
+    @Test
+    public void testDatesOutsideWeekAreIgnored() {
+        LocalDate monday = LocalDate.of(2025, 3, 3);
+        ReservationCalendar calendar = new ReservationCalendar(monday, List.of(equipment(10L, "A")));
+
+        calendar.markReserved(0, monday.minusDays(1));
+        calendar.markReserved(0, monday.plusDays(7));
+
+        for (int day = 0; day < ReservationCalendar.DAYS; day++) {
+            assertFalse(calendar.isReserved(0, day));
+        }
+        assertEquals(monday.plusDays(6), calendar.getWeekEnd());
+        assertEquals(7, calendar.getDates().size());
+    }
+}
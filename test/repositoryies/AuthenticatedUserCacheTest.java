@@ -0,0 +1,68 @@
+package repositoryies;
+
+import models.UserPrincipal;
+import models.UserRole;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AuthenticatedUserCacheTest {
+
+    private AuthenticatedUserCache newCache() {
+        return new AuthenticatedUserCache(100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    public void testSecondLookupIsServedFromCache() {
+        AuthenticatedUserCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            Optional<UserPrincipal> principal = cache.get(1L, id -> {
+                loads.incrementAndGet();
+                return CompletableFuture.completedFuture(new UserPrincipal(id, "alice", "alice@example.com", UserRole.STAFF));
+            }).toCompletableFuture().join();
+            assertEquals("alice", principal.get().getUsername());
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.stats().getHitCount());
+        assertEquals(1, cache.stats().getMissCount());
+    }
+
+    @Test
+    public void testInvalidateForcesReload() {
+        AuthenticatedUserCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(new UserPrincipal(id, "alice", "alice@example.com", UserRole.CUSTOMER));
+        }).toCompletableFuture().join();
+        cache.invalidate(1L);
+        Optional<UserPrincipal> principal = cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(new UserPrincipal(id, "alice", "alice@example.com", UserRole.ADMIN));
+        }).toCompletableFuture().join();
+
+        assertEquals(2, loads.get());
+        assertEquals(UserRole.ADMIN, principal.get().getRole());
+    }
+
+    @Test
+    public void testUnknownUserIsNotCached() {
+        AuthenticatedUserCache cache = newCache();
+
+        Optional<UserPrincipal> missing = cache.get(1L, id -> CompletableFuture.completedFuture(null)).toCompletableFuture().join();
+        Optional<UserPrincipal> found = cache.get(1L, id ->
+                CompletableFuture.completedFuture(new UserPrincipal(id, "bob", "bob@example.com", UserRole.CUSTOMER))).toCompletableFuture().join();
+
+        assertFalse(missing.isPresent());
+        assertTrue(found.isPresent());
+    }
+}
@@ -0,0 +1,130 @@
+package repositoryies;
+
+import io.ebean.DB;
+import models.EmailOutbox;
+import org.junit.Test;
+import play.test.WithApplication;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EmailOutboxRepositoryTest extends WithApplication {
+
+    private EmailOutbox enqueue(EmailOutboxRepository repository, String recipient) {
+        EmailOutbox email = new EmailOutbox(recipient, "件名", "本文");
+        repository.enqueue(email).toCompletableFuture().join();
+        return email;
+    }
+
+    @Test
+    public void testLeasedEmailsAreNotClaimedTwice() {
+        EmailOutboxRepository repository = app.injector().instanceOf(EmailOutboxRepository.class);
+        enqueue(repository, "a@example.com");
+        enqueue(repository, "b@example.com");
+        enqueue(repository, "c@example.com");
+
+        List<EmailOutbox> first = repository.claimBatch(2, Duration.ofMinutes(1)).toCompletableFuture().join();
+        List<EmailOutbox> second = repository.claimBatch(10, Duration.ofMinutes(1)).toCompletableFuture().join();
+        List<EmailOutbox> third = repository.claimBatch(10, Duration.ofMinutes(1)).toCompletableFuture().join();
+
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+        assertEquals("c@example.com", second.get(0).getRecipient());
+        assertNotEquals(first.get(0).getLeaseOwner(), second.get(0).getLeaseOwner());
+        assertTrue(third.isEmpty());
+    }
+
+    @Test
+    public void testExpiredLeaseCanBeClaimedAgain() {
+        EmailOutboxRepository repository = app.injector().instanceOf(EmailOutboxRepository.class);
+        EmailOutbox email = enqueue(repository, "a@example.com");
+
+        repository.claimBatch(10, Duration.ofMinutes(1)).toCompletableFuture().join();
+        DB.update(EmailOutbox.class)
+                .set("leaseUntil", LocalDateTime.now().minusSeconds(1))
+                .where().idEq(email.getId())
+                .update();
+        List<EmailOutbox> reclaimed = repository.claimBatch(10, Duration.ofMinutes(1)).toCompletableFuture().join();
+
+        assertEquals(1, reclaimed.size());
+        assertEquals(email.getId(), reclaimed.get(0).getId());
+    }
+
+    @Test
+    public void testMarkSentAndMarkFailed() {
+        EmailOutboxRepository repository = app.injector().instanceOf(EmailOutboxRepository.class);
+        enqueue(repository, "a@example.com");
+        enqueue(repository, "b@example.com");
+
+        List<EmailOutbox> batch = repository.claimBatch(10, Duration.ofMinutes(1)).toCompletableFuture().join();
+        String leaseOwner = batch.get(0).getLeaseOwner();
+        repository.markSent(leaseOwner, List.of(batch.get(0).getId())).toCompletableFuture().join();
+        repository.markFailed(leaseOwner, batch.get(1), "550 mailbox unavailable",
+                LocalDateTime.now().plusMinutes(5), false).toCompletableFuture().join();
+
+        EmailOutbox sent = DB.find(EmailOutbox.class, batch.get(0).getId());
+        EmailOutbox failed = DB.find(EmailOutbox.class, batch.get(1).getId());
+        assertEquals(EmailOutbox.OutboxStatus.SENT, sent.getStatus());
+        assertNotNull(sent.getSentAt());
+        assertNull(sent.getLeaseOwner());
+        assertEquals(EmailOutbox.OutboxStatus.PENDING, failed.getStatus());
+        assertEquals(1, failed.getAttempts());
+        assertEquals("550 mailbox unavailable", failed.getLastError());
+        // Not due yet, so the failed email is not claimed again right away
+        assertTrue(repository.claimBatch(10, Duration.ofMinutes(1)).toCompletableFuture().join().isEmpty());
+        assertEquals(1, (int) repository.countPending().toCompletableFuture().join());
+    }
+
+    @Test
+    public void testBodiesAreScrubbedOnceSentOrGivenUp() {
+        EmailOutboxRepository repository = app.injector().instanceOf(EmailOutboxRepository.class);
+        EmailOutbox reset = new EmailOutbox("a@example.com", "パスワードリセット", "https://example.com/reset-password?token=secret");
+        reset.setHtmlBody("<a href=\"https://example.com/reset-password?token=secret\">リセット</a>");
+        repository.enqueue(reset).toCompletableFuture().join();
+        enqueue(repository, "b@example.com");
+        enqueue(repository, "c@example.com");
+
+        List<EmailOutbox> batch = repository.claimBatch(10, Duration.ofMinutes(1)).toCompletableFuture().join();
+        String leaseOwner = batch.get(0).getLeaseOwner();
+        repository.markSent(leaseOwner, List.of(batch.get(0).getId())).toCompletableFuture().join();
+        repository.markFailed(leaseOwner, batch.get(1), "550 mailbox unavailable",
+                LocalDateTime.now(), true).toCompletableFuture().join();
+        repository.markFailed(leaseOwner, batch.get(2), "421 try again later",
+                LocalDateTime.now(), false).toCompletableFuture().join();
+
+        EmailOutbox sent = DB.find(EmailOutbox.class, batch.get(0).getId());
+        assertEquals("", sent.getBody());
+        assertNull(sent.getHtmlBody());
+        assertEquals("パスワードリセット", sent.getSubject());
+        assertEquals("", DB.find(EmailOutbox.class, batch.get(1).getId()).getBody());
+        // Still to be retried, so the body is kept
+        assertEquals("本文", DB.find(EmailOutbox.class, batch.get(2).getId()).getBody());
+    }
+
+    @Test
+    public void testDeleteFinishedChunkKeepsPendingAndRecentEmails() {
+        EmailOutboxRepository repository = app.injector().instanceOf(EmailOutboxRepository.class);
+        enqueue(repository, "a@example.com");
+        enqueue(repository, "b@example.com");
+        enqueue(repository, "c@example.com");
+        EmailOutbox pending = enqueue(repository, "d@example.com");
+        List<EmailOutbox> batch = repository.claimBatch(3, Duration.ofMinutes(1)).toCompletableFuture().join();
+        String leaseOwner = batch.get(0).getLeaseOwner();
+        repository.markSent(leaseOwner, List.of(batch.get(0).getId(), batch.get(1).getId())).toCompletableFuture().join();
+        repository.markFailed(leaseOwner, batch.get(2), "550 mailbox unavailable",
+                LocalDateTime.now(), true).toCompletableFuture().join();
+
+        // Nothing is older than an hour ago yet
+        assertEquals(0, (int) repository.deleteFinishedChunk(10, Instant.now().minusSeconds(3600)).toCompletableFuture().join());
+
+        Instant later = Instant.now().plusSeconds(60);
+        assertEquals(2, (int) repository.deleteFinishedChunk(2, later).toCompletableFuture().join());
+        assertEquals(1, (int) repository.deleteFinishedChunk(2, later).toCompletableFuture().join());
+        assertEquals(0, (int) repository.deleteFinishedChunk(2, later).toCompletableFuture().join());
+        assertEquals(List.of(pending.getId()), DB.find(EmailOutbox.class).findIds());
+    }
+}
@@ -0,0 +1,73 @@
+package repositoryies;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for EquipmentAvailabilityIndex
+ */
+public class EquipmentAvailabilityIndexTest {
+
+    private EquipmentAvailabilityIndex newIndex() {
+        // The mocked execution context never runs the warm-up task
+        return new EquipmentAvailabilityIndex(mock(DatabaseExecutionContext.class));
+    }
+
+    @Test
+    public void testNotReadyBeforeWarm() {
+        assertFalse(newIndex().isReady());
+    }
+
+    @Test
+    public void testMarkReservedAndAvailable() {
+        EquipmentAvailabilityIndex index = newIndex();
+        LocalDate date = LocalDate.of(2025, 4, 1);
+
+        assertFalse(index.isReserved(1L, date));
+
+        index.markReserved(1L, date);
+        assertTrue(index.isReserved(1L, date));
+        assertFalse(index.isReserved(1L, date.plusDays(1)));
+        assertFalse(index.isReserved(2L, date));
+
+        index.markAvailable(1L, date);
+        assertFalse(index.isReserved(1L, date));
+    }
+
+    @Test
+    public void testBitmapGrowsInBothDirections() {
+        EquipmentAvailabilityIndex index = newIndex();
+        LocalDate middle = LocalDate.of(2025, 6, 15);
+        LocalDate earlier = middle.minusDays(400);
+        LocalDate later = middle.plusDays(400);
+
+        index.markReserved(1L, middle);
+        index.markReserved(1L, earlier);
+        index.markReserved(1L, later);
+
+        assertTrue(index.isReserved(1L, middle));
+        assertTrue(index.isReserved(1L, earlier));
+        assertTrue(index.isReserved(1L, later));
+        assertFalse(index.isReserved(1L, earlier.minusDays(1)));
+        assertFalse(index.isReserved(1L, later.plusDays(1)));
+    }
+
+    @Test
+    public void testDayBitmapForEachVisitsSetDaysInOrder() {
+        EquipmentAvailabilityIndex.DayBitmap bitmap = new EquipmentAvailabilityIndex.DayBitmap();
+        bitmap.set(20_100);
+        bitmap.set(20_000);
+        bitmap.set(20_063);
+        bitmap.set(20_064);
+        bitmap.clear(20_063);
+
+        StringBuilder visited = new StringBuilder();
+        bitmap.forEach(day -> visited.append(day).append(' '));
+
+        assertEquals("20000 20064 20100 ", visited.toString());
+    }
+}
@@ -0,0 +1,92 @@
+package repositoryies;
+
+import models.Equipment;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for EquipmentCatalogCache
+ */
+public class EquipmentCatalogCacheTest {
+
+    private static Equipment equipment(String name) {
+        Equipment equipment = new Equipment();
+        equipment.setName(name);
+        return equipment;
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() {
+        EquipmentCatalogCache cache = new EquipmentCatalogCache(1L);
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<List<Equipment>> rows = new CompletableFuture<>();
+
+        CompletionStage<EquipmentCatalogCache.Snapshot> first = cache.get(() -> {
+            loads.incrementAndGet();
+            return rows;
+        });
+        CompletionStage<EquipmentCatalogCache.Snapshot> second = cache.get(() -> {
+            loads.incrementAndGet();
+            return rows;
+        });
+        rows.complete(List.of(equipment("Arduino Uno")));
+
+        assertEquals(1, loads.get());
+        assertSame(first.toCompletableFuture().join(), second.toCompletableFuture().join());
+        assertEquals(1L, first.toCompletableFuture().join().getVersion());
+    }
+
+    @Test
+    public void testServesSnapshotUntilInvalidated() {
+        EquipmentCatalogCache cache = new EquipmentCatalogCache(1L);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(() -> CompletableFuture.completedFuture(List.of(equipment("v" + loads.incrementAndGet())))).toCompletableFuture().join();
+        EquipmentCatalogCache.Snapshot cached = cache.get(() -> CompletableFuture.completedFuture(List.of(equipment("v" + loads.incrementAndGet())))).toCompletableFuture().join();
+        cache.invalidate();
+        EquipmentCatalogCache.Snapshot reloaded = cache.get(() -> CompletableFuture.completedFuture(List.of(equipment("v" + loads.incrementAndGet())))).toCompletableFuture().join();
+
+        assertEquals("v1", cached.getItems().get(0).getName());
+        assertEquals("v2", reloaded.getItems().get(0).getName());
+        assertEquals(2L, reloaded.getVersion());
+        assertEquals(2L, cache.version());
+        assertEquals(1, cache.stats().getHitCount());
+        assertEquals(2, cache.stats().getLoadCount());
+    }
+
+    @Test
+    public void testLoadOverlappingAChangeIsNotServedAfterIt() {
+        EquipmentCatalogCache cache = new EquipmentCatalogCache(1L);
+        CompletableFuture<List<Equipment>> slow = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletionStage<EquipmentCatalogCache.Snapshot> before = cache.get(() -> slow);
+        cache.invalidate();
+        slow.complete(List.of(equipment("old")));
+        EquipmentCatalogCache.Snapshot after = cache.get(() -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of(equipment("new")));
+        }).toCompletableFuture().join();
+
+        assertEquals("old", before.toCompletableFuture().join().getItems().get(0).getName());
+        assertEquals(1, loads.get());
+        assertEquals("new", after.getItems().get(0).getName());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        EquipmentCatalogCache cache = new EquipmentCatalogCache(1L);
+
+        CompletionStage<EquipmentCatalogCache.Snapshot> failed = cache.get(() -> CompletableFuture.failedFuture(new IllegalStateException("db down")));
+        EquipmentCatalogCache.Snapshot loaded = cache.get(() -> CompletableFuture.completedFuture(List.of(equipment("ok")))).toCompletableFuture().join();
+
+        assertTrue(failed.toCompletableFuture().isCompletedExceptionally());
+        assertEquals("ok", loaded.getItems().get(0).getName());
+    }
+}
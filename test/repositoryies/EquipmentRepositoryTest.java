@@ -0,0 +1,77 @@
+package repositoryies;
+
+import models.Equipment;
+import models.EquipmentCategory;
+import org.junit.Test;
+import play.test.WithApplication;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class EquipmentRepositoryTest extends WithApplication {
+
+    private void createEquipment(String name, EquipmentCategory category) {
+        new Equipment(name, new BigDecimal("1000"), null, category).save();
+    }
+
+    private static List<String> names(List<Equipment> equipmentList) {
+        return equipmentList.stream().map(Equipment::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPagesFollowEachOtherIncludingDuplicateNames() {
+        EquipmentRepository repository = app.injector().instanceOf(EquipmentRepository.class);
+        createEquipment("Arduino Uno", EquipmentCategory.MICROCONTROLLER);
+        createEquipment("USB Cable", EquipmentCategory.CABLES);
+        createEquipment("USB Cable", EquipmentCategory.CABLES);
+        createEquipment("USB Cable", EquipmentCategory.CABLES);
+        createEquipment("Soldering Iron", EquipmentCategory.TOOLS);
+
+        List<String> seen = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            KeysetPage<Equipment> page = repository.findPage(null, after, 2).toCompletableFuture().join();
+            seen.addAll(names(page.getItems()));
+            after = page.getNextCursor().orElse(null);
+            pages++;
+        } while (after != null);
+
+        assertEquals(List.of("Arduino Uno", "Soldering Iron", "USB Cable", "USB Cable", "USB Cable"), seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    public void testFiltersByCategory() {
+        EquipmentRepository repository = app.injector().instanceOf(EquipmentRepository.class);
+        createEquipment("Raspberry Pi 5", EquipmentCategory.SINGLE_BOARD_COMPUTER);
+        createEquipment("Raspberry Pi 4", EquipmentCategory.SINGLE_BOARD_COMPUTER);
+        createEquipment("Multimeter", EquipmentCategory.TOOLS);
+
+        KeysetPage<Equipment> page = repository.findPage(EquipmentCategory.SINGLE_BOARD_COMPUTER, null, 10).toCompletableFuture().join();
+
+        assertEquals(List.of("Raspberry Pi 4", "Raspberry Pi 5"), names(page.getItems()));
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void testSearchByNamePrefix() {
+        EquipmentRepository repository = app.injector().instanceOf(EquipmentRepository.class);
+        createEquipment("Raspberry Pi 5", EquipmentCategory.SINGLE_BOARD_COMPUTER);
+        createEquipment("Raspberry Pi Pico", EquipmentCategory.MICROCONTROLLER);
+        createEquipment("Reflow Oven", EquipmentCategory.TOOLS);
+
+        List<Equipment> matches = repository.searchByNamePrefix("Rasp", null, 20).toCompletableFuture().join();
+        List<Equipment> limited = repository.searchByNamePrefix("R", null, 2).toCompletableFuture().join();
+        List<Equipment> inCategory = repository.searchByNamePrefix("Rasp", EquipmentCategory.MICROCONTROLLER, 20).toCompletableFuture().join();
+
+        assertEquals(List.of("Raspberry Pi 5", "Raspberry Pi Pico"), names(matches));
+        assertEquals(2, limited.size());
+        assertEquals(List.of("Raspberry Pi Pico"), names(inCategory));
+        assertEquals(EquipmentCategory.MICROCONTROLLER, inCategory.get(0).getCategory());
+    }
+}
@@ -0,0 +1,185 @@
+package repositoryies;
+
+import io.ebean.DB;
+import io.ebean.DuplicateKeyException;
+import io.ebean.Transaction;
+import models.Equipment;
+import models.EquipmentCategory;
+import models.EquipmentReservation;
+import models.User;
+import org.junit.Test;
+import play.test.WithApplication;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class EquipmentReservationRepositoryTest extends WithApplication {
+
+    private User createUser(String username) {
+        User user = new User(username, username + "@example.com", "password123");
+        user.save();
+        return user;
+    }
+
+    private Equipment createEquipment() {
+        Equipment equipment = new Equipment("Raspberry Pi 5", new BigDecimal("12000"), "8GB", EquipmentCategory.SINGLE_BOARD_COMPUTER);
+        equipment.save();
+        return equipment;
+    }
+
+    @Test
+    public void testSecondClaimForSameDateIsLost() {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+        Equipment equipment = createEquipment();
+        LocalDate date = LocalDate.now().plusDays(1);
+
+        ReservationClaim first = repository.claim(equipment.getId(), createUser("first"), date).toCompletableFuture().join();
+        ReservationClaim second = repository.claim(equipment.getId(), createUser("second"), date).toCompletableFuture().join();
+
+        assertTrue(first.isWon());
+        assertTrue(first.getReservation().isPresent());
+        assertEquals(ReservationClaim.Outcome.LOST, second.getOutcome());
+        assertFalse(second.getReservation().isPresent());
+    }
+
+    @Test
+    public void testClaimForUnknownEquipment() {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+
+        ReservationClaim claim = repository.claim(Long.MAX_VALUE, createUser("unknown"), LocalDate.now()).toCompletableFuture().join();
+
+        assertEquals(ReservationClaim.Outcome.EQUIPMENT_NOT_FOUND, claim.getOutcome());
+    }
+
+    @Test
+    public void testCancelledDateCanBeClaimedAgain() {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+        Equipment equipment = createEquipment();
+        User user = createUser("again");
+        LocalDate date = LocalDate.now().plusDays(2);
+
+        ReservationClaim first = repository.claim(equipment.getId(), user, date).toCompletableFuture().join();
+        Long reservationId = first.getReservation().get().getId();
+        assertTrue(repository.cancelReservation(reservationId, user).toCompletableFuture().join());
+
+        ReservationClaim second = repository.claim(equipment.getId(), user, date).toCompletableFuture().join();
+        assertTrue(second.isWon());
+    }
+
+    @Test
+    public void testClaimAllReservesEveryDate() {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+        Equipment equipment = createEquipment();
+        LocalDate start = LocalDate.now().plusDays(7);
+        List<LocalDate> week = List.of(start, start.plusDays(1), start.plusDays(2), start.plusDays(3), start.plusDays(4));
+
+        ReservationClaim claim = repository.claimAll(equipment.getId(), createUser("week"), week).toCompletableFuture().join();
+
+        assertTrue(claim.isWon());
+        assertEquals(5, claim.getReservations().size());
+        assertFalse(repository.isEquipmentAvailable(equipment, start.plusDays(4)).toCompletableFuture().join());
+    }
+
+    @Test
+    public void testClaimAllIsAllOrNothing() {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+        Equipment equipment = createEquipment();
+        LocalDate start = LocalDate.now().plusDays(14);
+        repository.claim(equipment.getId(), createUser("taken"), start.plusDays(2)).toCompletableFuture().join();
+
+        List<LocalDate> range = List.of(start, start.plusDays(1), start.plusDays(2), start.plusDays(3));
+        ReservationClaim claim = repository.claimAll(equipment.getId(), createUser("range"), range).toCompletableFuture().join();
+
+        assertEquals(ReservationClaim.Outcome.LOST, claim.getOutcome());
+        assertEquals(List.of(start.plusDays(2)), claim.getConflictingDates());
+        assertTrue(repository.isEquipmentAvailable(equipment, start).toCompletableFuture().join());
+        assertTrue(repository.isEquipmentAvailable(equipment, start.plusDays(3)).toCompletableFuture().join());
+    }
+
+    @Test
+    public void testClaimAllLosesToAConcurrentInsertAfterItsCheck() throws Exception {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+        Equipment equipment = createEquipment();
+        User racer = createUser("racer");
+        User loser = createUser("loser");
+        LocalDate date = LocalDate.now().plusDays(30);
+
+        CompletableFuture<ReservationClaim> claim;
+        try (Transaction transaction = DB.beginTransaction()) {
+            // Not committed yet, so the conflict check of claimAll does not see it and its batch insert
+            // waits on the unique index until this transaction commits
+            new EquipmentReservation(equipment, racer, date).save();
+            claim = repository.claimAll(equipment.getId(), loser, List.of(date.minusDays(1), date)).toCompletableFuture();
+            Thread.sleep(500);
+            transaction.commit();
+        }
+        ReservationClaim result = claim.get(10, TimeUnit.SECONDS);
+
+        assertEquals(ReservationClaim.Outcome.LOST, result.getOutcome());
+        // Lost on the unique index rather than in the conflict query, which would have named the date
+        assertTrue(result.getConflictingDates().isEmpty());
+        assertEquals(0, DB.find(EquipmentReservation.class).where().eq("user", loser).findCount());
+    }
+
+    @Test(expected = DuplicateKeyException.class)
+    public void testUniqueIndexRejectsDuplicateActiveReservation() {
+        Equipment equipment = createEquipment();
+        LocalDate date = LocalDate.now().plusDays(3);
+
+        new EquipmentReservation(equipment, createUser("one"), date).save();
+        new EquipmentReservation(equipment, createUser("two"), date).save();
+    }
+
+    @Test
+    public void testUpcomingStartsTodayInDateOrder() {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+        Equipment equipment = createEquipment();
+        User user = createUser("upcoming");
+        LocalDate today = LocalDate.of(2030, 1, 10);
+        for (LocalDate date : List.of(today.plusDays(3), today.minusDays(1), today, today.plusDays(1))) {
+            new EquipmentReservation(equipment, user, date).save();
+        }
+        new EquipmentReservation(equipment, createUser("other"), today.plusDays(2)).save();
+
+        List<EquipmentReservation> upcoming = repository.findUpcomingByUser(user, today).toCompletableFuture().join();
+
+        assertEquals(List.of(today, today.plusDays(1), today.plusDays(3)),
+                upcoming.stream().map(EquipmentReservation::getReservationDate).collect(Collectors.toList()));
+        assertEquals("Raspberry Pi 5", upcoming.get(0).getEquipment().getName());
+    }
+
+    @Test
+    public void testPastPagesGoBackInTimeWithoutGapsOrDuplicates() {
+        EquipmentReservationRepository repository = app.injector().instanceOf(EquipmentReservationRepository.class);
+        Equipment first = createEquipment();
+        Equipment second = createEquipment();
+        User user = createUser("regular");
+        LocalDate today = LocalDate.of(2030, 1, 10);
+        new EquipmentReservation(first, user, today).save();
+        for (int daysAgo = 1; daysAgo <= 3; daysAgo++) {
+            new EquipmentReservation(first, user, today.minusDays(daysAgo)).save();
+        }
+        // Two reservations on the same day are ordered by id
+        new EquipmentReservation(second, user, today.minusDays(2)).save();
+
+        List<LocalDate> seen = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            KeysetPage<EquipmentReservation> page = repository.findPastByUser(user, today, after, 2).toCompletableFuture().join();
+            page.getItems().forEach(reservation -> seen.add(reservation.getReservationDate()));
+            after = page.getNextCursor().orElse(null);
+            pages++;
+        } while (after != null);
+
+        assertEquals(List.of(today.minusDays(1), today.minusDays(2), today.minusDays(2), today.minusDays(3)), seen);
+        assertEquals(2, pages);
+    }
+}
\ No newline at end of file
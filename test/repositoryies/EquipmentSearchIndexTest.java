@@ -0,0 +1,117 @@
+package repositoryies;
+
+import models.EquipmentCategory;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for EquipmentSearchIndex
+ */
+public class EquipmentSearchIndexTest {
+
+    private EquipmentSearchIndex newIndex() {
+        EquipmentSearchIndex index = new EquipmentSearchIndex();
+        index.put(1L, "Raspberry Pi 5", "8GB RAM、ケース付き", EquipmentCategory.SINGLE_BOARD_COMPUTER);
+        index.put(2L, "Raspberry Pi Pico", "RP2040 マイコンボード", EquipmentCategory.MICROCONTROLLER);
+        index.put(3L, "USB-C ケーブル", "1m 急速充電対応", EquipmentCategory.CABLES);
+        index.put(4L, "温湿度センサー", "DHT22", EquipmentCategory.SENSORS);
+        return index;
+    }
+
+    private static List<Long> ids(List<EquipmentSearchIndex.Hit> hits) {
+        return hits.stream().map(EquipmentSearchIndex.Hit::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testNotReadyBeforeLoad() {
+        // The mocked execution context never runs the loading task
+        assertFalse(new EquipmentSearchIndex(mock(DatabaseExecutionContext.class)).isReady());
+    }
+
+    @Test
+    public void testNamePrefixRanksFirst() {
+        List<EquipmentSearchIndex.Hit> hits = newIndex().search("raspberry pi 5", 10);
+
+        assertEquals(Long.valueOf(1L), Long.valueOf(hits.get(0).getId()));
+        assertTrue(ids(hits).contains(2L));
+        assertFalse(ids(hits).contains(3L));
+    }
+
+    @Test
+    public void testMatchesJapaneseInDescriptionAndCategory() {
+        EquipmentSearchIndex index = newIndex();
+
+        assertEquals(List.of(2L), ids(index.search("マイコン", 10)));
+        assertEquals(List.of(4L), ids(index.search("センサ", 10)));
+        assertEquals(List.of(3L), ids(index.search("急速充電", 10)));
+    }
+
+    @Test
+    public void testNormalizesWidthCaseAndKana() {
+        EquipmentSearchIndex index = newIndex();
+
+        assertEquals(List.of(3L), ids(index.search("ＵＳＢ", 10)));
+        assertEquals(List.of(3L), ids(index.search("けーぶる", 10)));
+    }
+
+    @Test
+    public void testToleratesATypo() {
+        assertEquals(Long.valueOf(1L), Long.valueOf(newIndex().search("raspbery", 10).get(0).getId()));
+    }
+
+    @Test
+    public void testSingleCharacterQuery() {
+        assertEquals(List.of(4L), ids(newIndex().search("温", 10)));
+    }
+
+    @Test
+    public void testLimit() {
+        assertEquals(1, newIndex().search("raspberry", 1).size());
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        EquipmentSearchIndex index = newIndex();
+
+        index.put(3L, "HDMI ケーブル", "2m", EquipmentCategory.CABLES);
+        index.remove(4L);
+
+        assertTrue(index.search("usb", 10).isEmpty());
+        assertEquals(List.of(3L), ids(index.search("hdmi", 10)));
+        assertTrue(index.search("センサー", 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testAutocompleteMatchesNameAndWordPrefixes() {
+        EquipmentSearchIndex index = newIndex();
+
+        assertEquals(List.of(1L, 2L), ids(index.autocomplete("rasp", 10)));
+        assertEquals(List.of(2L), ids(index.autocomplete("pico", 10)));
+        assertEquals(List.of(3L), ids(index.autocomplete("ケー", 10)));
+        assertTrue(index.autocomplete("berry", 10).isEmpty());
+    }
+
+    @Test
+    public void testGramsAreDistinctAndStopAtNonLetters() {
+        // "aaa a": bigram "aa" once, trigram "aaa" once, nothing across the space
+        assertEquals(2, EquipmentSearchIndex.grams("aaa a").length);
+    }
+
+    @Test
+    public void testRetryDelayDoublesUpToAMinute() {
+        for (int i = 0; i < 100; i++) {
+            long first = EquipmentSearchIndex.retryDelayMillis(1);
+            assertTrue(first >= 500 && first <= 1_000);
+            long third = EquipmentSearchIndex.retryDelayMillis(3);
+            assertTrue(third >= 2_000 && third <= 4_000);
+            long late = EquipmentSearchIndex.retryDelayMillis(50);
+            assertTrue(late >= 30_000 && late <= 60_000);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package repositoryies;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KeysetPageTest {
+
+    @Test
+    public void testExtraRowMeansThereIsANextPage() {
+        KeysetPage<String> page = KeysetPage.of(List.of("a", "b", "c"), 2, value -> (long) value.charAt(0), value -> value);
+
+        assertEquals(List.of("a", "b"), page.getItems());
+        assertTrue(page.hasNext());
+        KeysetPage.Cursor cursor = KeysetPage.Cursor.decode(page.getNextCursor().get()).get();
+        assertEquals(Long.valueOf('b'), cursor.id);
+        assertEquals("b", cursor.value);
+    }
+
+    @Test
+    public void testLastPageHasNoCursor() {
+        KeysetPage<String> page = KeysetPage.of(List.of("a", "b"), 2, value -> 1L, value -> value);
+
+        assertEquals(List.of("a", "b"), page.getItems());
+        assertFalse(page.hasNext());
+        assertFalse(page.getNextCursor().isPresent());
+    }
+
+    @Test
+    public void testCursorRoundTripsNonAsciiAndSeparatorCharacters() {
+        String encoded = new KeysetPage.Cursor(42L, "山田:太郎").encode();
+
+        KeysetPage.Cursor cursor = KeysetPage.Cursor.decode(encoded).get();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+        assertEquals(Long.valueOf(42L), cursor.id);
+        assertEquals("山田:太郎", cursor.value);
+    }
+
+    @Test
+    public void testMissingOrMalformedCursorMeansFirstPage() {
+        assertFalse(KeysetPage.Cursor.decode(null).isPresent());
+        assertFalse(KeysetPage.Cursor.decode("").isPresent());
+        assertFalse(KeysetPage.Cursor.decode("not base64!").isPresent());
+        // "abc:x" has no numeric id
+        assertFalse(KeysetPage.Cursor.decode("YWJjOng").isPresent());
+    }
+}
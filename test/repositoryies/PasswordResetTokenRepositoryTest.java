@@ -0,0 +1,71 @@
+package repositoryies;
+
+import io.ebean.DB;
+import models.PasswordResetToken;
+import models.User;
+import org.junit.Test;
+import play.test.WithApplication;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class PasswordResetTokenRepositoryTest extends WithApplication {
+
+    private PasswordResetToken createToken(PasswordResetTokenRepository repository, String username,
+                                           LocalDateTime expiresAt, boolean used) {
+        User user = new User(username, username + "@example.com", "password123");
+        user.save();
+        PasswordResetToken token = new PasswordResetToken(user);
+        token.setExpiresAt(expiresAt);
+        token.setUsed(used);
+        repository.insert(token).toCompletableFuture().join();
+        return token;
+    }
+
+    private Optional<PasswordResetToken> find(PasswordResetTokenRepository repository, String token) {
+        return repository.findValidToken(token).toCompletableFuture().join();
+    }
+
+    @Test
+    public void testValidTokenIsFoundWithItsUser() {
+        PasswordResetTokenRepository repository = app.injector().instanceOf(PasswordResetTokenRepository.class);
+        PasswordResetToken token = createToken(repository, "valid", LocalDateTime.now().plusHours(1), false);
+
+        PasswordResetToken found = find(repository, token.getToken()).orElseThrow();
+
+        assertEquals(token.getId(), found.getId());
+        // The user comes with the token rather than as a lazy reference
+        assertFalse(DB.beanState(found.getUser()).isReference());
+        assertEquals("valid", found.getUser().getUsername());
+    }
+
+    @Test
+    public void testExpiredTokenIsNotFound() {
+        PasswordResetTokenRepository repository = app.injector().instanceOf(PasswordResetTokenRepository.class);
+        PasswordResetToken token = createToken(repository, "expired", LocalDateTime.now().minusMinutes(1), false);
+
+        assertFalse(find(repository, token.getToken()).isPresent());
+    }
+
+    @Test
+    public void testUsedTokenIsNotFound() {
+        PasswordResetTokenRepository repository = app.injector().instanceOf(PasswordResetTokenRepository.class);
+        PasswordResetToken token = createToken(repository, "used", LocalDateTime.now().plusHours(1), true);
+
+        assertFalse(find(repository, token.getToken()).isPresent());
+    }
+
+    @Test
+    public void testUnknownOrStoredHashIsNotFound() {
+        PasswordResetTokenRepository repository = app.injector().instanceOf(PasswordResetTokenRepository.class);
+        PasswordResetToken token = createToken(repository, "other", LocalDateTime.now().plusHours(1), false);
+
+        assertFalse(find(repository, "no-such-token").isPresent());
+        assertFalse(find(repository, "").isPresent());
+        assertFalse(find(repository, null).isPresent());
+        // Only the raw token from the email is accepted, not what is stored in the table
+        assertFalse(find(repository, token.getTokenHash()).isPresent());
+    }
+}
@@ -0,0 +1,61 @@
+package repositoryies;
+
+import models.User;
+import models.UserRole;
+import org.junit.Test;
+import play.test.WithApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class UserRepositoryTest extends WithApplication {
+
+    private void createUser(String username, UserRole role) {
+        new User(username, username + "@example.com", "password123", role).save();
+    }
+
+    private static List<String> usernames(KeysetPage<User> page) {
+        return page.getItems().stream().map(User::getUsername).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPagesFollowEachOtherWithoutGapsOrDuplicates() {
+        UserRepository repository = app.injector().instanceOf(UserRepository.class);
+        for (String username : List.of("erin", "alice", "dave", "carol", "bob")) {
+            createUser(username, UserRole.CUSTOMER);
+        }
+
+        List<String> seen = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            KeysetPage<User> page = repository.findPage(UserRole.CUSTOMER, null, after, 2).toCompletableFuture().join();
+            seen.addAll(usernames(page));
+            after = page.getNextCursor().orElse(null);
+            pages++;
+        } while (after != null);
+
+        assertEquals(List.of("alice", "bob", "carol", "dave", "erin"), seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    public void testFiltersByRoleAndPrefix() {
+        UserRepository repository = app.injector().instanceOf(UserRepository.class);
+        createUser("staff-one", UserRole.STAFF);
+        createUser("staff-two", UserRole.STAFF);
+        createUser("member", UserRole.CUSTOMER);
+
+        KeysetPage<User> staff = repository.findPage(UserRole.STAFF, null, null, 10).toCompletableFuture().join();
+        KeysetPage<User> byPrefix = repository.findPage(null, "staff-t", null, 10).toCompletableFuture().join();
+        KeysetPage<User> byEmail = repository.findPage(null, "member@", null, 10).toCompletableFuture().join();
+
+        assertEquals(List.of("staff-one", "staff-two"), usernames(staff));
+        assertEquals(List.of("staff-two"), usernames(byPrefix));
+        assertEquals(List.of("member"), usernames(byEmail));
+        assertFalse(staff.hasNext());
+    }
+}
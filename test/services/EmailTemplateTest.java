@@ -0,0 +1,71 @@
+package services;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EmailTemplateTest {
+
+    @Test
+    public void testRenderReplacesVariablesInOrderOfDeclaration() {
+        EmailTemplate template = EmailTemplate.compile("{{greeting}}, {{ name }}! {{name}}",
+                EmailTemplate.Escaping.NONE, "name", "greeting");
+
+        StringBuilder out = new StringBuilder("> ");
+        template.render(out, "alice", "こんにちは");
+
+        assertEquals("> こんにちは, alice! alice", out.toString());
+    }
+
+    @Test
+    public void testHtmlTemplateEscapesValuesButNotMarkup() {
+        EmailTemplate template = EmailTemplate.compile("<p>{{name}}</p>", EmailTemplate.Escaping.HTML, "name");
+
+        StringBuilder out = new StringBuilder();
+        template.render(out, "<b>\"Tom\" & 'Jerry'</b>");
+
+        assertEquals("<p>&lt;b&gt;&quot;Tom&quot; &amp; &#39;Jerry&#39;&lt;/b&gt;</p>", out.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownVariableFailsAtCompileTime() {
+        EmailTemplate.compile("Hello {{nmae}}", EmailTemplate.Escaping.NONE, "name");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnclosedPlaceholderFailsAtCompileTime() {
+        EmailTemplate.compile("Hello {{name", EmailTemplate.Escaping.NONE, "name");
+    }
+
+    @Test
+    public void testWelcomeTemplateMatchesPreviousPlainTextBody() {
+        EmailTemplates templates = new EmailTemplates();
+
+        EmailTemplates.Rendered rendered = templates.render(EmailTemplates.Kind.WELCOME, "alice", "alice@example.com");
+
+        String expected = String.format(
+                "こんにちは %s さん,\n\n" +
+                "コワーキングスペースポータルへの会員登録が完了しました。\n\n" +
+                "ユーザー名: %s\n" +
+                "メールアドレス: %s\n\n" +
+                "ポータルサイトにログインして、設備の予約や管理を行うことができます。\n\n" +
+                "ご不明な点がございましたら、お気軽にお問い合わせください。\n\n" +
+                "コワーキングスペースポータル\n",
+                "alice", "alice", "alice@example.com");
+        assertEquals("コワーキングスペースポータルへようこそ", rendered.getSubject());
+        assertEquals(expected, rendered.getText());
+        assertTrue(rendered.getHtml().contains("<td>alice@example.com</td>"));
+    }
+
+    @Test
+    public void testPasswordResetHtmlEscapesTheLink() {
+        EmailTemplates templates = new EmailTemplates();
+
+        EmailTemplates.Rendered rendered = templates.render(EmailTemplates.Kind.PASSWORD_RESET,
+                "bob", "http://localhost:9000/reset-password?token=a&b");
+
+        assertEquals("パスワードリセットのご案内", rendered.getSubject());
+        assertTrue(rendered.getText().contains("http://localhost:9000/reset-password?token=a&b\n"));
+        assertTrue(rendered.getHtml().contains("href=\"http://localhost:9000/reset-password?token=a&amp;b\""));
+    }
+}
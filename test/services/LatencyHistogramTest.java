@@ -0,0 +1,67 @@
+package services;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for LatencyHistogram
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsAreWithinSixPercent() {
+        for (long micros = 1; micros < 100_000_000L; micros = micros * 3 / 2 + 1) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            long lower = LatencyHistogram.lowerBound(index);
+
+            assertTrue(micros + " >= " + lower, micros >= lower);
+            assertTrue(micros + " < next " + LatencyHistogram.lowerBound(index + 1), micros < LatencyHistogram.lowerBound(index + 1));
+            assertTrue(micros - lower <= micros / LatencyHistogram.SUB_BUCKETS);
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void testCumulativeCountsAndQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(800));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(30));
+        }
+
+        long[] cumulative = histogram.cumulativeCounts(new long[]{1_000, 10_000, 50_000});
+
+        assertArrayEquals(new long[]{90, 90, 100, 100}, cumulative);
+        assertEquals(90 * 800_000L + 10 * 30_000_000L, histogram.sumNanos());
+        assertEquals(800, histogram.valueAtQuantile(0.5), 800 / 16);
+        assertEquals(30_000, histogram.valueAtQuantile(0.99), 30_000 / 16);
+    }
+
+    @Test
+    public void testRecordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        LatencyHistogram histogram = new LatencyHistogram();
+        RequestMetrics.Route route = new RequestMetrics().route(null);
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 1000L);
+            route.record(200, i * 1000L);
+        }
+        long threadId = Thread.currentThread().getId();
+        threads.getThreadAllocatedBytes(threadId);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 1000L);
+            route.record(i % 5 * 100 + 100, i * 1000L);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
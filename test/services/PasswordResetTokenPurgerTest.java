@@ -0,0 +1,66 @@
+package services;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PasswordResetTokenPurgerTest {
+
+    /**
+     * Deletes from a fake table of the given number of purgeable rows and records each chunk size
+     */
+    private static PasswordResetTokenPurger purger(int rows, int chunkSize, int maxChunks, List<Integer> chunks) {
+        AtomicInteger remaining = new AtomicInteger(rows);
+        return new PasswordResetTokenPurger(limit -> {
+            int deleted = Math.min(limit, remaining.get());
+            remaining.addAndGet(-deleted);
+            chunks.add(deleted);
+            return CompletableFuture.completedFuture(deleted);
+        }, chunkSize, maxChunks);
+    }
+
+    @Test
+    public void testDeletesInChunksUntilAShortChunk() {
+        List<Integer> chunks = new ArrayList<>();
+        PasswordResetTokenPurger purger = purger(7, 3, 100, chunks);
+
+        PasswordResetTokenPurger.RunResult result = purger.purge().toCompletableFuture().join();
+
+        assertEquals(List.of(3, 3, 1), chunks);
+        assertEquals(7, result.getDeletedCount());
+        assertEquals(3, result.getChunkCount());
+        assertSame(result, purger.getLastRun());
+        assertEquals(7, purger.getTotalDeleted());
+    }
+
+    @Test
+    public void testStopsAtMaxChunksPerRun() {
+        List<Integer> chunks = new ArrayList<>();
+        PasswordResetTokenPurger purger = purger(100, 10, 2, chunks);
+
+        PasswordResetTokenPurger.RunResult first = purger.purge().toCompletableFuture().join();
+        PasswordResetTokenPurger.RunResult second = purger.purge().toCompletableFuture().join();
+
+        assertEquals(20, first.getDeletedCount());
+        assertEquals(20, second.getDeletedCount());
+        assertEquals(40, purger.getTotalDeleted());
+        assertEquals(2, purger.getRunCount());
+    }
+
+    @Test
+    public void testEmptyTableRunsOneQuery() {
+        List<Integer> chunks = new ArrayList<>();
+        PasswordResetTokenPurger purger = purger(0, 10, 100, chunks);
+
+        PasswordResetTokenPurger.RunResult result = purger.purge().toCompletableFuture().join();
+
+        assertEquals(List.of(0), chunks);
+        assertEquals(0, result.getDeletedCount());
+        assertEquals(0, result.getChunkCount());
+    }
+}
@@ -0,0 +1,87 @@
+package services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class PasswordServiceTest {
+
+    private PasswordService passwordService;
+
+    @Before
+    public void setUp() {
+        passwordService = new PasswordService(1, 1, 10);
+    }
+
+    @After
+    public void tearDown() {
+        passwordService.shutdown();
+    }
+
+    @Test
+    public void testHashAndVerify() {
+        String hashed = passwordService.hash("password123").toCompletableFuture().join();
+
+        assertNotEquals("password123", hashed);
+        assertTrue(passwordService.verify("password123", hashed).toCompletableFuture().join());
+        assertFalse(passwordService.verify("wrong", hashed).toCompletableFuture().join());
+    }
+
+    @Test
+    public void testVerifyWithoutStoredHashFails() {
+        assertFalse(passwordService.verify("password123", null).toCompletableFuture().join());
+    }
+
+    @Test
+    public void testSaturatedExecutorRejectsImmediately() {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(passwordService.hash("password" + i).toCompletableFuture());
+        }
+
+        long rejected = futures.stream().filter(future -> {
+            try {
+                future.join();
+                return false;
+            } catch (CompletionException e) {
+                return e.getCause() instanceof RejectedExecutionException;
+            }
+        }).count();
+
+        // One task running plus one queued; everything else is turned away
+        assertTrue(rejected >= 8);
+    }
+
+    @Test
+    public void testHashUsesConfiguredCost() {
+        String hashed = passwordService.hash("password123").toCompletableFuture().join();
+
+        assertEquals(10, PasswordService.costOf(hashed));
+        assertFalse(passwordService.needsRehash(hashed));
+        assertTrue(passwordService.needsRehash(org.mindrot.jbcrypt.BCrypt.hashpw("password123", org.mindrot.jbcrypt.BCrypt.gensalt(5))));
+        assertTrue(passwordService.needsRehash("not-a-bcrypt-hash"));
+    }
+
+    @Test
+    public void testHigherCostHashIsNotDowngraded() {
+        String stronger = org.mindrot.jbcrypt.BCrypt.hashpw("password123", org.mindrot.jbcrypt.BCrypt.gensalt(11));
+
+        assertEquals(11, PasswordService.costOf(stronger));
+        assertFalse(passwordService.needsRehash(stronger));
+    }
+
+    @Test
+    public void testCalibrationStaysWithinBounds() {
+        assertEquals(4, PasswordService.calibrateCost(Duration.ZERO, 4, 8));
+        assertEquals(8, PasswordService.calibrateCost(Duration.ofMinutes(1), 4, 8));
+    }
+}
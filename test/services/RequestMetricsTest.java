@@ -0,0 +1,35 @@
+package services;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for RequestMetrics
+ */
+public class RequestMetricsTest {
+
+    @Test
+    public void testPrometheusHistogramPerStatusClass() {
+        RequestMetrics metrics = new RequestMetrics();
+        RequestMetrics.Route route = metrics.route(null);
+        route.record(200, TimeUnit.MILLISECONDS.toNanos(3));
+        route.record(204, TimeUnit.MILLISECONDS.toNanos(30));
+        route.record(503, TimeUnit.SECONDS.toNanos(20));
+
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("# TYPE http_server_requests_seconds histogram\n"));
+        assertTrue(text.contains("http_server_requests_seconds_bucket{route=\"unmatched\",status=\"2xx\",le=\"0.0025\"} 0\n"));
+        assertTrue(text.contains("http_server_requests_seconds_bucket{route=\"unmatched\",status=\"2xx\",le=\"0.005\"} 1\n"));
+        assertTrue(text.contains("http_server_requests_seconds_bucket{route=\"unmatched\",status=\"2xx\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("http_server_requests_seconds_sum{route=\"unmatched\",status=\"2xx\"} 0.033\n"));
+        assertTrue(text.contains("http_server_requests_seconds_bucket{route=\"unmatched\",status=\"5xx\",le=\"10.0\"} 0\n"));
+        assertTrue(text.contains("http_server_requests_seconds_count{route=\"unmatched\",status=\"5xx\"} 1\n"));
+        assertFalse(text.contains("status=\"4xx\""));
+    }
+}
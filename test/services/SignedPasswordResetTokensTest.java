@@ -0,0 +1,80 @@
+package services;
+
+import models.User;
+import models.UserRole;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class SignedPasswordResetTokensTest {
+
+    private static final byte[] SECRET = "test-secret-key-for-signed-reset-tokens".getBytes(StandardCharsets.UTF_8);
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    private static SignedPasswordResetTokens tokens(Instant now) {
+        return new SignedPasswordResetTokens(SECRET, Duration.ofHours(24), Clock.fixed(now, ZoneOffset.UTC), true);
+    }
+
+    private static User user(Long id, String hashedPassword) {
+        User user = new User("alice", "alice@example.com", UserRole.CUSTOMER);
+        user.setId(id);
+        user.setHashedPassword(hashedPassword);
+        return user;
+    }
+
+    @Test
+    public void testTokenIsValidForTheSameUserAndPassword() {
+        User user = user(42L, "$2a$10$hash");
+        String token = tokens(NOW).create(user);
+
+        Optional<SignedPasswordResetTokens.Claims> claims = tokens(NOW.plusSeconds(60)).parse(token);
+
+        assertTrue(claims.isPresent());
+        assertEquals(Long.valueOf(42L), claims.get().getUserId());
+        assertEquals(NOW.plus(Duration.ofHours(24)), claims.get().getExpiresAt());
+        assertTrue(tokens(NOW).verify(claims.get(), user));
+    }
+
+    @Test
+    public void testChangingThePasswordInvalidatesTheToken() {
+        String token = tokens(NOW).create(user(42L, "$2a$10$old"));
+
+        SignedPasswordResetTokens.Claims claims = tokens(NOW).parse(token).get();
+
+        assertFalse(tokens(NOW).verify(claims, user(42L, "$2a$10$new")));
+    }
+
+    @Test
+    public void testExpiredTokenIsRejected() {
+        String token = tokens(NOW).create(user(42L, "$2a$10$hash"));
+
+        assertFalse(tokens(NOW.plus(Duration.ofHours(24))).parse(token).isPresent());
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        User user = user(42L, "$2a$10$hash");
+        String token = tokens(NOW).create(user);
+        String otherUser = "43" + token.substring(token.indexOf('.'));
+
+        SignedPasswordResetTokens.Claims claims = tokens(NOW).parse(otherUser).get();
+
+        assertFalse(tokens(NOW).verify(claims, user(43L, "$2a$10$hash")));
+    }
+
+    @Test
+    public void testMalformedTokensAreRejected() {
+        SignedPasswordResetTokens tokens = tokens(NOW);
+
+        assertFalse(tokens.parse(null).isPresent());
+        assertFalse(tokens.parse("0b5c2e1e-2f5e-4e55-9c1b-3b1b0c3d4e5f").isPresent());
+        assertFalse(tokens.parse("abc.def.ghi").isPresent());
+    }
+}
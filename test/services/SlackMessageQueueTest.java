@@ -0,0 +1,112 @@
+package services;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for SlackMessageQueue
+ */
+public class SlackMessageQueueTest {
+
+    @Test
+    public void testPendingMessagesAreMergedIntoOnePost() throws Exception {
+        List<String> posts = new CopyOnWriteArrayList<>();
+        SlackMessageQueue queue = new SlackMessageQueue(text -> {
+            posts.add(text);
+            return CompletableFuture.completedFuture(null);
+        }, 100, Duration.ofMillis(200), 20, SlackMessageQueue.OverflowPolicy.DROP_OLDEST, Duration.ZERO);
+
+        CompletionStage<Void> first = queue.enqueue("login: alice");
+        CompletionStage<Void> second = queue.enqueue("login: bob");
+        CompletionStage<Void> third = queue.enqueue("reservation: carol");
+        CompletableFuture.allOf(first.toCompletableFuture(), second.toCompletableFuture(), third.toCompletableFuture())
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, posts.size());
+        assertTrue(posts.get(0).contains("3件の通知"));
+        assertTrue(posts.get(0).contains("login: bob"));
+        assertEquals(1, queue.stats().getFlushCount());
+        assertEquals(3, queue.stats().getSentMessageCount());
+        queue.stop().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFullQueueDropsOldest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> posts = new CopyOnWriteArrayList<>();
+        SlackMessageQueue queue = new SlackMessageQueue(text -> {
+            posts.add(text);
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }, 2, Duration.ZERO, 1, SlackMessageQueue.OverflowPolicy.DROP_OLDEST, Duration.ZERO);
+
+        // The drainer takes "blocking" and waits on the webhook, so the queue itself holds only two
+        queue.enqueue("blocking");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (posts.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        queue.enqueue("a");
+        queue.enqueue("b");
+        queue.enqueue("c");
+
+        assertEquals(2, queue.stats().getQueueDepth());
+        assertEquals(1, queue.stats().getDroppedCount());
+
+        release.countDown();
+        queue.stop().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertFalse(posts.contains("a"));
+        assertTrue(posts.contains("c"));
+    }
+
+    @Test
+    public void testIdleDrainerExitsAndRestarts() throws Exception {
+        List<String> posts = new CopyOnWriteArrayList<>();
+        SlackMessageQueue queue = new SlackMessageQueue(text -> {
+            posts.add(text);
+            return CompletableFuture.completedFuture(null);
+        }, 10, Duration.ZERO, 1, SlackMessageQueue.OverflowPolicy.DROP_OLDEST, Duration.ZERO);
+        assertFalse(queue.isDraining());
+
+        queue.enqueue("first").toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertTrue(queue.isDraining());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.isDraining() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(queue.isDraining());
+
+        queue.enqueue("second").toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("first", "second"), posts);
+    }
+
+    @Test
+    public void testMessagesAfterStopAreStillPosted() throws Exception {
+        List<String> posts = new CopyOnWriteArrayList<>();
+        SlackMessageQueue queue = new SlackMessageQueue(text -> {
+            posts.add(text);
+            return CompletableFuture.completedFuture(null);
+        }, 10, Duration.ZERO, 1, SlackMessageQueue.OverflowPolicy.DROP_OLDEST, Duration.ZERO);
+
+        queue.enqueue("before").toCompletableFuture().get(5, TimeUnit.SECONDS);
+        queue.stop().toCompletableFuture().get(5, TimeUnit.SECONDS);
+        queue.enqueue("after").toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("before", "after"), posts);
+        queue.stop().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+}
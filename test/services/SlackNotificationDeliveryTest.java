@@ -0,0 +1,171 @@
+package services;
+
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.concurrent.ClassLoaderExecutionContext;
+import play.libs.ws.WSClient;
+import play.test.WSTestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests Slack webhook delivery against a local stub server that answers slowly, with 429 or with 5xx
+ */
+public class SlackNotificationDeliveryTest {
+
+    private static final Config CONFIG = ConfigFactory.parseString(
+            "slack.queue { capacity = 10, flushInterval = 10 ms, maxBatchSize = 10, overflowPolicy = DROP_OLDEST, blockTimeout = 0 }\n" +
+            "slack.delivery { requestTimeout = 300 ms, maxAttempts = 3, initialBackoff = 10 ms, maxBackoff = 2 seconds,\n" +
+            "  circuitBreaker { failureThreshold = 2, openDuration = 1 minute } }");
+
+    private HttpServer server;
+    private WSClient wsClient;
+    private final Queue<Integer> responses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile long slowResponseMillis;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/webhook", exchange -> {
+            requestCount.incrementAndGet();
+            try {
+                if (slowResponseMillis > 0) {
+                    Thread.sleep(slowResponseMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Integer status = responses.poll();
+            int code = status != null ? status : 200;
+            if (code == 429) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/warmup", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        wsClient = WSTestClient.newClient(server.getAddress().getPort());
+        // The first request of a new client is slow; keep it out of the timeout-sensitive tests
+        wsClient.url("/warmup").get().toCompletableFuture().join();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        wsClient.close();
+        server.stop(0);
+    }
+
+    private SlackNotificationService newService() {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/webhook";
+        return new SlackNotificationService(wsClient, new ClassLoaderExecutionContext(ForkJoinPool.commonPool()), url, CONFIG);
+    }
+
+    private void post(SlackNotificationService service) throws Exception {
+        service.postToWebhook("test").toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testServerErrorIsRetried() throws Exception {
+        SlackNotificationService service = newService();
+        responses.add(500);
+        responses.add(503);
+
+        post(service);
+
+        assertEquals(3, requestCount.get());
+        assertEquals(1, service.getDeliveryStats().getDeliveredCount());
+        assertEquals(2, service.getDeliveryStats().getRetryCount());
+    }
+
+    @Test
+    public void testRateLimitHonoursRetryAfter() throws Exception {
+        SlackNotificationService service = newService();
+        responses.add(429);
+
+        long start = System.nanoTime();
+        post(service);
+
+        // Retry-After: 1 wins over the 10 ms initial backoff
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(900));
+        assertEquals(2, requestCount.get());
+        assertEquals(1, service.getDeliveryStats().getRateLimitedCount());
+        assertEquals(1, service.getDeliveryStats().getDeliveredCount());
+    }
+
+    @Test
+    public void testSlowWebhookTimesOutAndOpensCircuit() throws Exception {
+        SlackNotificationService service = newService();
+        slowResponseMillis = 1000;
+
+        post(service);
+        post(service);
+        assertEquals(SlackNotificationService.CircuitState.OPEN, service.getDeliveryStats().getCircuitState());
+        assertEquals(2, service.getDeliveryStats().getFailedCount());
+
+        int callsBeforeOpen = requestCount.get();
+        post(service);
+
+        assertEquals(callsBeforeOpen, requestCount.get());
+        assertEquals(1, service.getDeliveryStats().getShortCircuitedCount());
+    }
+
+    @Test
+    public void testHalfOpenCircuitLetsOneProbeThrough() throws Exception {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/webhook";
+        SlackNotificationService service = new SlackNotificationService(wsClient,
+                new ClassLoaderExecutionContext(ForkJoinPool.commonPool()), url, ConfigFactory.parseString(
+                        "slack.delivery { maxAttempts = 1, circuitBreaker { failureThreshold = 1, openDuration = 50 ms } }")
+                        .withFallback(CONFIG));
+        responses.add(500);
+        post(service);
+        assertEquals(SlackNotificationService.CircuitState.OPEN, service.getDeliveryStats().getCircuitState());
+        Thread.sleep(100);
+
+        // Concurrent deliveries once the open duration has passed: only the first reaches the webhook
+        slowResponseMillis = 200;
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            deliveries.add(service.postToWebhook("test " + i).toCompletableFuture());
+        }
+        CompletableFuture.allOf(deliveries.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, requestCount.get());
+        assertEquals(4, service.getDeliveryStats().getShortCircuitedCount());
+        assertEquals(SlackNotificationService.CircuitState.CLOSED, service.getDeliveryStats().getCircuitState());
+    }
+
+    @Test
+    public void testRetryAfterParsing() {
+        assertEquals(Duration.ofSeconds(30), SlackNotificationService.parseRetryAfter("30").get());
+        assertTrue(SlackNotificationService.parseRetryAfter("soon").isEmpty());
+    }
+}
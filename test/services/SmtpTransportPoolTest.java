@@ -0,0 +1,94 @@
+package services;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for SmtpTransportPool
+ */
+public class SmtpTransportPoolTest {
+
+    private static class FakeTransport extends Transport {
+
+        private boolean open = true;
+
+        FakeTransport() {
+            super(Session.getInstance(new Properties()), new URLName("smtp://localhost"));
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+
+    @Test
+    public void testReleasedTransportIsReused() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(FakeTransport::new, 2, Duration.ofMinutes(1));
+
+        SmtpTransportPool.Borrowed first = pool.borrow();
+        assertFalse(first.isReused());
+        pool.release(first.getTransport(), true);
+
+        SmtpTransportPool.Borrowed second = pool.borrow();
+        assertTrue(second.isReused());
+        assertSame(first.getTransport(), second.getTransport());
+        assertEquals(1, pool.getCreatedCount());
+    }
+
+    @Test
+    public void testDisconnectedTransportIsReplaced() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(FakeTransport::new, 2, Duration.ofMinutes(1));
+
+        Transport dropped = pool.borrow().getTransport();
+        pool.release(dropped, true);
+        dropped.close();
+
+        SmtpTransportPool.Borrowed next = pool.borrow();
+        assertFalse(next.isReused());
+        assertNotSame(dropped, next.getTransport());
+        assertEquals(1, pool.getDiscardedCount());
+    }
+
+    @Test
+    public void testIdleTransportsAreEvicted() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(FakeTransport::new, 2, Duration.ZERO);
+
+        Transport transport = pool.borrow().getTransport();
+        pool.release(transport, true);
+        Thread.sleep(1);
+        pool.evictIdle();
+
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(transport.isConnected());
+    }
+
+    @Test
+    public void testBrokenTransportIsNotPooled() throws Exception {
+        SmtpTransportPool pool = new SmtpTransportPool(FakeTransport::new, 2, Duration.ofMinutes(1));
+
+        Transport transport = pool.borrow().getTransport();
+        pool.release(transport, false);
+
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(transport.isConnected());
+    }
+}